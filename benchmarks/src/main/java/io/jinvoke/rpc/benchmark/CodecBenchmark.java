@@ -0,0 +1,103 @@
+package io.jinvoke.rpc.benchmark;
+
+import io.jinvoke.rpc.codec.FrameCodec;
+import io.jinvoke.rpc.codec.Serializer;
+import io.jinvoke.rpc.codec.Serializers;
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.jinvoke.rpc.protocol.InvocationResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of requests and results per serializer and payload size,
+ * both through the {@link Serializer} alone and as whole frames through {@link FrameCodec}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"binary", "json"})
+    public String serializer;
+
+    @Param({"16", "1024", "65536"})
+    public int payloadSize;
+
+    private Serializer codec;
+    private InvocationRequest request;
+    private InvocationResult result;
+    private ByteBuf encodedRequest;
+    private ByteBuf encodedResult;
+    private EmbeddedChannel channel;
+
+    @Setup
+    public void setUp() {
+        codec = Serializers.byName(serializer);
+        String payload = "x".repeat(payloadSize);
+        request = InvocationRequest.of(1, "target", EchoService.class.getName(), "echo",
+                new Object[]{payload}, new String[]{String.class.getName()}, String.class.getName());
+        result = InvocationResult.success(1, payload);
+
+        encodedRequest = PooledByteBufAllocator.DEFAULT.directBuffer();
+        codec.writeRequest(request, encodedRequest);
+        encodedResult = PooledByteBufAllocator.DEFAULT.directBuffer();
+        codec.writeResult(result, encodedResult);
+
+        channel = new EmbeddedChannel(new FrameCodec());
+        Serializers.bind(channel, codec);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encodedRequest.release();
+        encodedResult.release();
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int encodeRequest() {
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.directBuffer();
+        try {
+            codec.writeRequest(request, out);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    @Benchmark
+    public InvocationRequest decodeRequest() {
+        return codec.readRequest(1, "target", encodedRequest.duplicate());
+    }
+
+    @Benchmark
+    public int encodeResult() {
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.directBuffer();
+        try {
+            codec.writeResult(result, out);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    @Benchmark
+    public InvocationResult decodeResult() {
+        return codec.readResult(1, encodedResult.duplicate());
+    }
+
+    @Benchmark
+    public Object frameRoundTrip() {
+        channel.writeOutbound(Frame.invoke(request));
+        channel.writeInbound((ByteBuf) channel.readOutbound());
+        return channel.readInbound();
+    }
+}
@@ -0,0 +1,10 @@
+package io.jinvoke.rpc.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface EchoService {
+
+    String echo(String value);
+
+    CompletableFuture<String> echoAsync(String value);
+}
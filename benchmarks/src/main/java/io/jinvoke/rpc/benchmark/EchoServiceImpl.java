@@ -0,0 +1,23 @@
+package io.jinvoke.rpc.benchmark;
+
+import io.jinvoke.rpc.config.Rpc;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs inline so round trips measure the transport rather than thread hand-off.
+ */
+public class EchoServiceImpl implements EchoService {
+
+    @Override
+    @Rpc(execution = Rpc.Execution.INLINE)
+    public String echo(String value) {
+        return value;
+    }
+
+    @Override
+    @Rpc(execution = Rpc.Execution.INLINE)
+    public CompletableFuture<String> echoAsync(String value) {
+        return CompletableFuture.completedFuture(value);
+    }
+}
@@ -0,0 +1,125 @@
+package io.jinvoke.rpc.benchmark;
+
+import io.jinvoke.rpc.client.RpcClient;
+import io.jinvoke.rpc.client.RpcProxyFactory;
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.jinvoke.rpc.server.RpcServer;
+import io.jinvoke.rpc.transport.Transport;
+import io.jinvoke.rpc.transport.TransportOptions;
+import io.netty.channel.Channel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caller → hub → target → hub → caller round trips over Netty's in-VM local
+ * transport and loopback TCP.
+ * <p>
+ * {@code handBuilt} sends the same request without the proxy, so the gap to
+ * {@code proxySync} is the cost of proxy dispatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+    private static final String TARGET = "bench-target";
+    private static final String[] PARAM_TYPES = {String.class.getName()};
+
+    @Param({"local", "tcp"})
+    public String transport;
+
+    @Param({"binary", "json"})
+    public String serializer;
+
+    @Param({"16", "4096"})
+    public int payloadSize;
+
+    private RpcServer server;
+    private RpcClient target;
+    private RpcClient caller;
+    private EchoService proxy;
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        boolean local = "local".equals(transport);
+        int port = local ? 1 : freePort();
+        payload = "x".repeat(payloadSize);
+
+        server = new RpcServer(port, TransportOptions.defaults().transport(local ? Transport.LOCAL : Transport.AUTO));
+        server.bind();
+        target = client(TARGET, port, local);
+        caller = client("bench-caller", port, local);
+        proxy = new RpcProxyFactory(caller).generate(EchoService.class, TARGET, 10, TimeUnit.SECONDS);
+        awaitReady();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        caller.shutdown();
+        target.shutdown();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public String proxySync() {
+        return proxy.echo(payload);
+    }
+
+    @Benchmark
+    public String proxyAsync() {
+        return proxy.echoAsync(payload).join();
+    }
+
+    @Benchmark
+    public Object handBuilt() {
+        long id = caller.nextRequestId();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Channel channel = caller.channel();
+        caller.trackRequest(channel, id, future, 10, TimeUnit.SECONDS);
+        channel.writeAndFlush(Frame.invoke(InvocationRequest.of(id, TARGET,
+                EchoService.class.getName(), "echo", new Object[]{payload}, PARAM_TYPES, String.class.getName())));
+        return future.join();
+    }
+
+    private RpcClient client(String clientId, int port, boolean local) {
+        RpcClient client = new RpcClient();
+        client.setPort(port);
+        client.setTransport(local ? "local" : "auto");
+        client.setSerializer(serializer);
+        client.setClientId(clientId);
+        client.setScanPackages(new String[]{EchoService.class.getPackageName()});
+        client.afterSingletonsInstantiated();
+        return client;
+    }
+
+    // Both clients connect and register asynchronously
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try {
+                if ("ping".equals(proxy.echo("ping"))) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Clients not ready", e);
+                }
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
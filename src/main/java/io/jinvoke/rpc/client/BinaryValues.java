@@ -0,0 +1,65 @@
+package io.jinvoke.rpc.client;
+
+import com.alibaba.fastjson2.util.TypeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ByteBuffer} and {@link InputStream} arguments and results travel as
+ * {@code byte[]}, chunked on the wire when large. The sender reads them in full,
+ * up to the maximum payload size, and the receiver wraps the bytes again in the
+ * type the method declares.
+ */
+final class BinaryValues {
+
+    private BinaryValues() {
+    }
+
+    static boolean isBinary(Class<?> type) {
+        return type == ByteBuffer.class || type == InputStream.class;
+    }
+
+    /**
+     * @return the bytes of a {@link ByteBuffer} or {@link InputStream}, any other
+     * value as it is
+     * @throws IllegalArgumentException if a stream holds more than {@code maxSize} bytes
+     */
+    static Object toWire(Object value, int maxSize) {
+        return switch (value) {
+            case ByteBuffer buffer -> {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                yield bytes;
+            }
+            case InputStream in -> read(in, maxSize);
+            case null, default -> value;
+        };
+    }
+
+    /**
+     * Wraps bytes received for a value declared as {@code type}.
+     */
+    static Object fromWire(Object value, Class<?> type) {
+        if (value == null || type.isInstance(value)) {
+            return value;
+        }
+        byte[] bytes = value instanceof byte[] array ? array : TypeUtils.cast(value, byte[].class);
+        return type == ByteBuffer.class ? ByteBuffer.wrap(bytes) : new ByteArrayInputStream(bytes);
+    }
+
+    private static byte[] read(InputStream in, int maxSize) {
+        try (in) {
+            byte[] bytes = in.readNBytes(maxSize + 1);
+            if (bytes.length > maxSize) {
+                throw new IllegalArgumentException("Stream exceeds the payload limit of " + maxSize + " bytes");
+            }
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package io.jinvoke.rpc.client;
 
+import io.jinvoke.rpc.codec.Compression;
+import io.jinvoke.rpc.codec.Serializer;
+import io.jinvoke.rpc.codec.Serializers;
+import io.jinvoke.rpc.config.Rpc;
+import io.jinvoke.rpc.protocol.Batch;
 import io.jinvoke.rpc.protocol.Frame;
 import io.jinvoke.rpc.protocol.InvocationRequest;
 import io.jinvoke.rpc.protocol.InvocationResult;
+import io.jinvoke.rpc.protocol.Lookup;
+import io.jinvoke.rpc.protocol.Registration;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Method;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.BaseStream;
 
 public class ClientFrameHandler extends SimpleChannelInboundHandler<Frame> {
     private static final Logger log = LoggerFactory.getLogger(ClientFrameHandler.class);
@@ -24,9 +40,15 @@ public class ClientFrameHandler extends SimpleChannelInboundHandler<Frame> {
     protected void channelRead0(ChannelHandlerContext ctx, Frame frame) {
         try {
             switch (frame.type()) {
-                case FORWARD -> handleForward(ctx, frame);
+                // INVOKE arrives on direct channels from other clients
+                case FORWARD, INVOKE -> handleForward(ctx, frame, null);
                 case RESULT -> handleResult(frame);
-                case HEARTBEAT -> ctx.writeAndFlush(Frame.heartbeat());
+                case STREAM -> handleStream(frame);
+                case BATCH -> handleBatch(ctx, frame.asBatch());
+                case CREDIT -> OutboundStream.credit(ctx.channel(), frame.messageId(), frame.asCredit().amount());
+                case LOOKUP -> handleLookup(frame);
+                case INVALIDATE -> client.caches().invalidate(frame.asInvalidation());
+                case REGISTER -> handleRegistered(ctx, frame);
                 default -> log.warn("Unexpected frame type: {}", frame.type());
             }
         } catch (Exception e) {
@@ -34,34 +56,162 @@ public class ClientFrameHandler extends SimpleChannelInboundHandler<Frame> {
         }
     }
 
-    private void handleForward(ChannelHandlerContext ctx, Frame frame) {
+    // Requests of a batch are answered with batches of results
+    private void handleBatch(ChannelHandlerContext ctx, Batch batch) {
+        ResultBatch results = null;
+        for (Frame entry : batch.frames()) {
+            switch (entry.type()) {
+                case FORWARD, INVOKE -> {
+                    if (results == null) {
+                        results = new ResultBatch(ctx.channel());
+                    }
+                    handleForward(ctx, entry, results);
+                }
+                case RESULT -> handleResult(entry);
+                default -> log.warn("Unexpected frame in batch: {}", entry.type());
+            }
+        }
+    }
+
+    /**
+     * @param results where the result goes if the request came in a batch, else {@code null}
+     */
+    private void handleForward(ChannelHandlerContext ctx, Frame frame, ResultBatch results) {
+        long start = System.nanoTime();
         InvocationRequest request = frame.asRequest();
+        MethodInvoker invoker = client.invokers().find(request);
+
+        if (invoker == null) {
+            reply(ctx, results, request, null, new NoSuchMethodException("Method not found: " + request.signature()));
+            return;
+        }
+
+        // Registered before invoking so credit arriving meanwhile is not lost
+        OutboundStream stream = request.streaming() ? OutboundStream.open(ctx.channel(), request.requestId()) : null;
 
+        InvocationExecutor executor = client.executor();
+        Rpc.Execution mode = executor.resolve(invoker.execution());
+        if (mode == Rpc.Execution.INLINE) {
+            invoke(ctx, results, request, invoker, stream, false, start);
+            return;
+        }
+
+        if (!executor.tryAcquire()) {
+            RejectedExecutionException rejected = new RejectedExecutionException(
+                    "Too many concurrent invocations, rejected: " + request.signature());
+            invoker.calls().failed(rejected);
+            complete(ctx, results, request, stream, null, rejected, false);
+            return;
+        }
         try {
-            Object result = invokeLocal(request);
-            ctx.writeAndFlush(Frame.result(InvocationResult.success(request.requestId(), result)));
-            log.info("Executed: {}", request.signature());
-        } catch (Exception e) {
-            ctx.writeAndFlush(Frame.result(InvocationResult.failure(request.requestId(), e)));
-            log.error("Execution failed: {}", request.signature(), e);
+            executor.executor(mode).execute(() -> invoke(ctx, results, request, invoker, stream, true, start));
+        } catch (RejectedExecutionException e) {
+            invoker.calls().failed(e);
+            complete(ctx, results, request, stream, null, e, true);
+        }
+    }
+
+    private void invoke(ChannelHandlerContext ctx, ResultBatch results, InvocationRequest request,
+                        MethodInvoker invoker, OutboundStream stream, boolean permit, long start) {
+        try {
+            Object result = invoker.invoke(request.params());
+            if (stream != null) {
+                // Timed until the method returned its elements, not until they were all sent
+                invoker.calls().record(start, null);
+                // The permit is held until the whole stream has been sent
+                stream.start(result, client.executor().executor(Rpc.Execution.VIRTUAL),
+                        permit ? client.executor()::release : () -> {
+                        });
+            } else if (result instanceof CompletionStage<?> stage) {
+                // Asynchronous @Rpc method: answer once its stage completes
+                stage.whenComplete((value, error) -> {
+                    invoker.calls().record(start, error);
+                    complete(ctx, results, request, null, value, error, permit);
+                });
+            } else {
+                invoker.calls().record(start, null);
+                complete(ctx, results, request, null, result, null, permit);
+            }
+        } catch (Throwable e) {
+            invoker.calls().record(start, e);
+            complete(ctx, results, request, stream, null, e, permit);
         }
     }
 
-    private Object invokeLocal(InvocationRequest request) throws Exception {
-        var descriptor = client.methods().get(
-                methodId(request.targetClass(), request.targetMethod(), request.paramTypes())
-        );
+    private void complete(ChannelHandlerContext ctx, ResultBatch results, InvocationRequest request,
+                          OutboundStream stream, Object value, Throwable error, boolean permit) {
+        if (permit) {
+            client.executor().release();
+        }
+        if (stream != null) {
+            stream.fail(error);
+        } else {
+            reply(ctx, results, request, value, error);
+        }
+    }
 
-        if (descriptor == null) {
-            throw new NoSuchMethodException("Method not found: " + request.signature());
+    private void reply(ChannelHandlerContext ctx, ResultBatch results, InvocationRequest request,
+                       Object value, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error == null) {
+            try {
+                value = materialize(value);
+            } catch (RuntimeException e) {
+                reply(ctx, results, request, null, e);
+                return;
+            }
+            send(ctx, results, Frame.result(InvocationResult.success(request.requestId(), value)))
+                    .addListener(f -> {
+                        // e.g. a result over the payload limit: the caller still gets an answer
+                        if (!f.isSuccess() && ctx.channel().isActive()) {
+                            reply(ctx, null, request, null, f.cause());
+                        }
+                    });
+            if (log.isDebugEnabled()) {
+                log.debug("Executed: {}", request.signature());
+            }
+        } else {
+            send(ctx, results, Frame.result(InvocationResult.failure(request.requestId(), error)));
+            log.error("Execution failed: {}", request.signature(), error);
         }
+    }
 
-        Class<?> clazz = Class.forName(request.targetClass());
-        Method method = clazz.getMethod(request.targetMethod(),
-                toClasses(request.paramTypes()));
+    private static ChannelFuture send(ChannelHandlerContext ctx, ResultBatch results, Frame result) {
+        return results != null ? results.add(result) : ctx.writeAndFlush(result);
+    }
 
-        Object instance = clazz.getDeclaredConstructor().newInstance();
-        return method.invoke(instance, request.params());
+    // A caller that did not ask for a stream gets the elements as one list
+    private Object materialize(Object value) {
+        return switch (value) {
+            case BaseStream<?, ?> stream -> {
+                try (stream) {
+                    yield toList(stream.iterator());
+                }
+            }
+            case Iterator<?> iterator -> toList(iterator);
+            case ByteBuffer _, InputStream _ -> BinaryValues.toWire(value, client.maxPayloadSize());
+            case null, default -> value;
+        };
+    }
+
+    private static List<Object> toList(Iterator<?> iterator) {
+        List<Object> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    private void handleRegistered(ChannelHandlerContext ctx, Frame frame) {
+        Registration registration = frame.asRegistration();
+        Serializer serializer = Serializers.byName(registration.serializer());
+        Serializers.bind(ctx.channel(), serializer);
+        if (Compression.DEFLATE.equals(registration.compression())) {
+            Compression.enable(ctx.channel(), client.compressionThreshold());
+        }
+        log.info("Client registered: {} ({}, compression: {})",
+                client.clientId(), serializer.name(), registration.compression());
+        client.registered(ctx.channel());
     }
 
     @SuppressWarnings("unchecked")
@@ -82,16 +232,21 @@ public class ClientFrameHandler extends SimpleChannelInboundHandler<Frame> {
         }
     }
 
-    private String methodId(String className, String methodName, String[] paramTypes) {
-        return className + "#" + methodName + "(" + String.join(",", paramTypes) + ")";
+    private void handleStream(Frame frame) {
+        InboundStream stream = client.stream(frame.messageId());
+        if (stream == null) {
+            log.debug("No stream for: {}", frame.messageId());
+            return;
+        }
+        stream.onElement(((InvocationResult.Success) frame.asResult()).value());
     }
 
-    private Class<?>[] toClasses(String[] typeNames) throws ClassNotFoundException {
-        Class<?>[] classes = new Class<?>[typeNames.length];
-        for (int i = 0; i < typeNames.length; i++) {
-            classes[i] = Class.forName(typeNames[i]);
+    @SuppressWarnings("unchecked")
+    private void handleLookup(Frame frame) {
+        CompletableFuture<Lookup> future = (CompletableFuture<Lookup>) client.removeRequest(frame.messageId());
+        if (future != null) {
+            future.complete(frame.asLookup());
         }
-        return classes;
     }
 
     @Override
@@ -0,0 +1,162 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.codec.Serializer;
+import io.jinvoke.rpc.codec.Serializers;
+import io.jinvoke.rpc.protocol.Lookup;
+import io.jinvoke.rpc.transport.FlushCoalescingHandler;
+import io.jinvoke.rpc.transport.Transport;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Direct connections between clients, bypassing the hub.
+ * <p>
+ * The client listens for peers on its own port and reports it at registration.
+ * The first call to a target goes through the hub and starts a LOOKUP in the
+ * background; once the target's address is known and a connection is up, later
+ * calls use it. Whenever no direct channel is active, calls keep taking the hub,
+ * and discovery is retried after {@link #RETRY_NANOS}.
+ */
+final class DirectChannels {
+    private static final Logger log = LoggerFactory.getLogger(DirectChannels.class);
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final RpcClient client;
+    private final Transport transport;
+    private final Serializer serializer;
+    private final EventLoopGroup group;
+
+    // target clientId -> open direct channel
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    // target clientId -> when discovery was last started
+    private final Map<String, Long> attempts = new ConcurrentHashMap<>();
+
+    private Channel listener;
+
+    /**
+     * @param group the client's event loops, shut down by the client
+     */
+    DirectChannels(RpcClient client, Transport transport, EventLoopGroup group, Serializer serializer) {
+        this.client = client;
+        this.transport = transport;
+        this.serializer = serializer;
+        this.group = group;
+    }
+
+    /**
+     * Starts accepting direct connections.
+     *
+     * @param port port to listen on; {@code 0} for an ephemeral one
+     * @return the port actually bound
+     */
+    int listen(int port) throws InterruptedException {
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(group)
+                .channel(transport.serverChannelClass())
+                .childHandler(initializer());
+        if (transport.isSocket()) {
+            bootstrap.childOption(ChannelOption.TCP_NODELAY, true);
+        }
+        listener = bootstrap.bind(transport.address(null, port)).sync().channel();
+        int bound = listener.localAddress() instanceof InetSocketAddress address ? address.getPort() : port;
+        log.info("Accepting direct connections on port {}", bound);
+        return bound;
+    }
+
+    /**
+     * @return the active direct channel to {@code clientId}, or {@code null} to go
+     * through the hub while one is being set up
+     */
+    Channel channelFor(String clientId) {
+        Channel channel = channels.get(clientId);
+        if (channel != null && channel.isActive()) {
+            return channel;
+        }
+        discover(clientId);
+        return null;
+    }
+
+    void shutdown() {
+        if (listener != null) {
+            listener.close();
+        }
+        channels.values().forEach(Channel::close);
+    }
+
+    private void discover(String clientId) {
+        long now = System.nanoTime();
+        boolean[] started = {false};
+        attempts.compute(clientId, (_, last) -> {
+            if (last != null && now - last < RETRY_NANOS) {
+                return last;
+            }
+            started[0] = true;
+            return now;
+        });
+        if (!started[0]) {
+            return;
+        }
+
+        client.lookup(clientId).whenComplete((lookup, error) -> {
+            if (error != null) {
+                log.debug("Lookup of {} failed: {}", clientId, error.getMessage());
+            } else if (lookup.isReachable()) {
+                connect(lookup);
+            }
+        });
+    }
+
+    private void connect(Lookup lookup) {
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(transport.channelClass())
+                .handler(initializer());
+        if (transport.isSocket()) {
+            bootstrap.option(ChannelOption.TCP_NODELAY, true);
+        }
+
+        String clientId = lookup.clientId();
+        bootstrap.connect(transport.address(lookup.host(), lookup.port())).addListener((ChannelFuture future) -> {
+            if (!future.isSuccess()) {
+                log.debug("Direct connection to {} failed, staying on the hub: {}",
+                        clientId, future.cause().getMessage());
+                return;
+            }
+            Channel channel = future.channel();
+            channels.put(clientId, channel);
+            channel.closeFuture().addListener(f -> {
+                channels.remove(clientId, channel);
+                client.failPendingRequests(channel, new IllegalStateException("Direct connection closed: " + clientId));
+                log.info("Direct connection to {} closed", clientId);
+            });
+            log.info("Direct connection to {} at {}:{}", clientId, lookup.host(), lookup.port());
+        });
+    }
+
+    private ChannelInitializer<Channel> initializer() {
+        return new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                // No handshake on direct channels: each side writes with its own serializer
+                Serializers.bind(ch, serializer);
+                FlushCoalescingHandler flush = client.newFlushHandler();
+                if (flush != null) {
+                    ch.pipeline().addLast(flush);
+                }
+                ch.pipeline()
+                        .addLast(client.newFrameCodec())
+                        .addLast(client.newLivenessHandler())
+                        .addLast(new ClientFrameHandler(client));
+            }
+        };
+    }
+}
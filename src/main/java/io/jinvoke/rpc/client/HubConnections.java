@@ -0,0 +1,115 @@
+package io.jinvoke.rpc.client;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The connections a client keeps to its hub, all registered under the same
+ * client id. Each call picks one according to the {@link Balancing} policy, so
+ * outgoing writes, incoming FORWARDs and results are spread over several
+ * sockets and event loops. A connection joins once the hub confirmed its
+ * registration and leaves when it closes.
+ */
+final class HubConnections {
+    private static final Channel[] NONE = new Channel[0];
+
+    // calls awaiting a result on a channel
+    private static final AttributeKey<AtomicInteger> IN_FLIGHT = AttributeKey.valueOf("inFlight");
+
+    enum Balancing {
+        /** The active connection with the fewest calls awaiting a result. */
+        LEAST_PENDING,
+        /** Active connections in turn. */
+        ROUND_ROBIN
+    }
+
+    private final Balancing balancing;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile Channel[] channels = NONE;
+
+    HubConnections(Balancing balancing) {
+        this.balancing = balancing;
+    }
+
+    /**
+     * Starts using {@code channel}, once the hub confirmed its registration.
+     */
+    synchronized void add(Channel channel) {
+        channel.attr(IN_FLIGHT).setIfAbsent(new AtomicInteger());
+        Channel[] current = channels;
+        Channel[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = channel;
+        channels = added;
+    }
+
+    synchronized void remove(Channel channel) {
+        Channel[] remaining = Arrays.stream(channels).filter(ch -> ch != channel).toArray(Channel[]::new);
+        channels = remaining.length == 0 ? NONE : remaining;
+    }
+
+    Channel[] all() {
+        return channels;
+    }
+
+    /**
+     * @return the connection for the next call; an inactive one or {@code null}
+     * when none is up
+     */
+    Channel select() {
+        Channel[] current = channels;
+        if (current.length <= 1) {
+            return current.length == 0 ? null : current[0];
+        }
+        return switch (balancing) {
+            case LEAST_PENDING -> leastPending(current);
+            case ROUND_ROBIN -> roundRobin(current);
+        };
+    }
+
+    void close() {
+        for (Channel channel : channels) {
+            channel.close();
+        }
+    }
+
+    static void started(Channel channel) {
+        AtomicInteger inFlight = channel.attr(IN_FLIGHT).get();
+        if (inFlight != null) {
+            inFlight.incrementAndGet();
+        }
+    }
+
+    static void finished(Channel channel) {
+        AtomicInteger inFlight = channel.attr(IN_FLIGHT).get();
+        if (inFlight != null) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static Channel leastPending(Channel[] current) {
+        Channel best = current[0];
+        int fewest = Integer.MAX_VALUE;
+        for (Channel channel : current) {
+            int inFlight = channel.attr(IN_FLIGHT).get().get();
+            if (channel.isActive() && inFlight < fewest) {
+                best = channel;
+                fewest = inFlight;
+            }
+        }
+        return best;
+    }
+
+    private Channel roundRobin(Channel[] current) {
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < current.length; i++) {
+            Channel channel = current[(start + i) % current.length];
+            if (channel.isActive()) {
+                return channel;
+            }
+        }
+        return current[start % current.length];
+    }
+}
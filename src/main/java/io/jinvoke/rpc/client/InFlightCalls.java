@@ -0,0 +1,37 @@
+package io.jinvoke.rpc.client;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calls of coalesced proxy methods awaiting their result, keyed on the method id,
+ * the target and the canonical JSON form of the arguments, so that identical
+ * calls made meanwhile can wait for them instead of being sent.
+ */
+final class InFlightCalls {
+    private final Map<Key, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @return the identical call in flight, or {@code null} after making
+     * {@code call} that call until it completes
+     */
+    CompletableFuture<Object> join(String methodId, String target, String args, CompletableFuture<Object> call) {
+        Key key = new Key(methodId, target, args);
+        // A completed call may linger until its removal runs; it is no longer in flight
+        CompletableFuture<Object> current = calls.compute(key,
+                (_, existing) -> existing != null && !existing.isDone() ? existing : call);
+        if (current != call) {
+            return current;
+        }
+        call.whenComplete((_, _) -> calls.remove(key, call));
+        return null;
+    }
+
+    int size() {
+        return calls.size();
+    }
+
+    private record Key(String methodId, String target, String args) {
+    }
+}
@@ -0,0 +1,257 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.protocol.Credit;
+import io.jinvoke.rpc.protocol.Frame;
+import io.netty.channel.Channel;
+import io.netty.util.Timer;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The result of a streaming invocation on the caller side.
+ * <p>
+ * The caller grants the target a window of elements up front and grants more as
+ * elements are consumed, half a window at a time, so at most one window is ever
+ * buffered here or in flight. Elements are consumed either through
+ * {@link #iterator()}, which blocks for the next one, or by a single
+ * {@link Flow.Subscriber}, which receives them on the Netty event loop as its
+ * demand allows. The call fails with a {@link TimeoutException} when everything
+ * received was consumed and nothing more arrives within the timeout of the last
+ * element or credit.
+ */
+final class InboundStream {
+    private static final Object NULL = new Object();
+
+    private final Channel channel;
+    private final long requestId;
+    private final int window;
+    private final long timeoutNanos;
+    private final CompletableFuture<Object> completion = new CompletableFuture<>();
+
+    // guarded by this
+    private final ArrayDeque<Object> buffer = new ArrayDeque<>();
+    private int consumed;
+    private long lastActivity = System.nanoTime();
+    private boolean done;
+    private Throwable error;
+
+    private Flow.Subscriber<Object> subscriber;
+    private long demand;
+    private boolean subscriberDone;
+    private final AtomicInteger drains = new AtomicInteger();
+
+    InboundStream(Channel channel, long requestId, int window, long timeoutNanos) {
+        this.channel = channel;
+        this.requestId = requestId;
+        this.window = window;
+        this.timeoutNanos = timeoutNanos;
+        completion.whenComplete((_, e) -> end(e));
+    }
+
+    /**
+     * Completed by the RESULT frame that closes the stream.
+     */
+    CompletableFuture<Object> completion() {
+        return completion;
+    }
+
+    Credit initialCredit() {
+        return new Credit(window);
+    }
+
+    void startIdleTimer(Timer timer) {
+        timer.newTimeout(_ -> checkIdle(timer), timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void onElement(Object element) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            buffer.add(element == null ? NULL : element);
+            lastActivity = System.nanoTime();
+            notifyAll();
+        }
+        drain();
+    }
+
+    /**
+     * Stops the stream early and tells the target to stop producing.
+     */
+    void cancel() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+        }
+        channel.writeAndFlush(Frame.credit(requestId, Credit.cancel()));
+        completion.completeExceptionally(new CancellationException("Stream cancelled"));
+    }
+
+    Iterator<Object> iterator() {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                synchronized (InboundStream.this) {
+                    while (buffer.isEmpty() && !done) {
+                        try {
+                            InboundStream.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            cancel();
+                            throw new CancellationException("Interrupted while waiting for stream");
+                        }
+                    }
+                    if (!buffer.isEmpty()) {
+                        return true;
+                    }
+                    if (error != null) {
+                        throw error instanceof RuntimeException runtime ? runtime : new CompletionException(error);
+                    }
+                    return false;
+                }
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object element;
+                synchronized (InboundStream.this) {
+                    element = buffer.poll();
+                }
+                consumed(1);
+                return element == NULL ? null : element;
+            }
+        };
+    }
+
+    void subscribe(Flow.Subscriber<Object> s) {
+        synchronized (this) {
+            subscriber = s;
+        }
+        s.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    deliverError(new IllegalArgumentException("Demand must be positive: " + n));
+                    InboundStream.this.cancel();
+                    return;
+                }
+                synchronized (InboundStream.this) {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                synchronized (InboundStream.this) {
+                    subscriberDone = true;
+                }
+                InboundStream.this.cancel();
+            }
+        });
+        drain();
+    }
+
+    private void end(Throwable cause) {
+        synchronized (this) {
+            done = true;
+            error = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+            notifyAll();
+        }
+        drain();
+    }
+
+    // Hands buffered elements to the subscriber as its demand allows, one thread at a time
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (true) {
+                Object element;
+                Throwable failure;
+                synchronized (this) {
+                    if (subscriber == null || subscriberDone) {
+                        break;
+                    }
+                    if (!buffer.isEmpty() && demand > 0) {
+                        element = buffer.poll();
+                        demand--;
+                        failure = null;
+                    } else if (buffer.isEmpty() && done) {
+                        subscriberDone = true;
+                        element = null;
+                        failure = error;
+                    } else {
+                        break;
+                    }
+                }
+                if (element != null) {
+                    subscriber.onNext(element == NULL ? null : element);
+                    consumed(1);
+                } else if (failure != null) {
+                    subscriber.onError(failure);
+                } else {
+                    subscriber.onComplete();
+                }
+            }
+        } while (drains.decrementAndGet() != 0);
+    }
+
+    private void deliverError(Throwable failure) {
+        Flow.Subscriber<Object> s;
+        synchronized (this) {
+            if (subscriberDone) {
+                return;
+            }
+            subscriberDone = true;
+            s = subscriber;
+        }
+        s.onError(failure);
+    }
+
+    // Returns credit for consumed elements once half a window has been used up
+    private void consumed(int count) {
+        int granted;
+        synchronized (this) {
+            consumed += count;
+            if (done || consumed < Math.max(1, window / 2)) {
+                return;
+            }
+            granted = consumed;
+            consumed = 0;
+            lastActivity = System.nanoTime();
+        }
+        channel.writeAndFlush(Frame.credit(requestId, new Credit(granted)));
+    }
+
+    private void checkIdle(Timer timer) {
+        long idleNanos;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            idleNanos = buffer.isEmpty() ? System.nanoTime() - lastActivity : 0;
+        }
+        if (idleNanos >= timeoutNanos) {
+            channel.writeAndFlush(Frame.credit(requestId, Credit.cancel()));
+            completion.completeExceptionally(new TimeoutException(
+                    "No stream element within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms"));
+            return;
+        }
+        timer.newTimeout(_ -> checkIdle(timer), timeoutNanos - idleNanos, TimeUnit.NANOSECONDS);
+    }
+}
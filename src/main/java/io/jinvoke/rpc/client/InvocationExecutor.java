@@ -0,0 +1,86 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.config.Rpc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs forwarded invocations off the Netty event loop and caps how many are in
+ * flight at once, so that a slow method cannot stall a connection and a burst
+ * cannot pile up unbounded work.
+ */
+final class InvocationExecutor {
+    private final Rpc.Execution defaultMode;
+    private final int poolSize;
+    private final Semaphore permits;
+
+    private volatile ExecutorService virtualThreads;
+    private volatile ExecutorService pool;
+
+    /**
+     * @param maxConcurrency maximum offloaded invocations in flight; {@code 0} for no limit
+     */
+    InvocationExecutor(Rpc.Execution defaultMode, int poolSize, int maxConcurrency) {
+        if (defaultMode == Rpc.Execution.DEFAULT) {
+            throw new IllegalArgumentException("Default execution mode must be concrete");
+        }
+        this.defaultMode = defaultMode;
+        this.poolSize = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2;
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+    }
+
+    Rpc.Execution resolve(Rpc.Execution mode) {
+        return mode == Rpc.Execution.DEFAULT ? defaultMode : mode;
+    }
+
+    boolean tryAcquire() {
+        return permits == null || permits.tryAcquire();
+    }
+
+    void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    ExecutorService executor(Rpc.Execution mode) {
+        return switch (resolve(mode)) {
+            case VIRTUAL -> virtualThreads();
+            case POOL -> pool();
+            case INLINE, DEFAULT -> throw new IllegalArgumentException("No executor for " + mode);
+        };
+    }
+
+    void shutdown() {
+        if (virtualThreads != null) virtualThreads.shutdown();
+        if (pool != null) pool.shutdown();
+    }
+
+    private ExecutorService virtualThreads() {
+        ExecutorService executor = virtualThreads;
+        if (executor == null) {
+            synchronized (this) {
+                if ((executor = virtualThreads) == null) {
+                    virtualThreads = executor = Executors.newThreadPerTaskExecutor(
+                            Thread.ofVirtual().name("jinvoke-rpc-virtual-", 0).factory());
+                }
+            }
+        }
+        return executor;
+    }
+
+    private ExecutorService pool() {
+        ExecutorService executor = pool;
+        if (executor == null) {
+            synchronized (this) {
+                if ((executor = pool) == null) {
+                    pool = executor = Executors.newFixedThreadPool(poolSize,
+                            Thread.ofPlatform().name("jinvoke-rpc-worker-", 0).daemon(true).factory());
+                }
+            }
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,55 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.protocol.InvocationRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Invokers for local {@code @Rpc} methods, keyed by class name and method name,
+ * with overloads told apart by their parameter type names. Lookups do not build
+ * strings or touch reflection.
+ */
+final class InvokerRegistry {
+    private final Map<String, Map<String, List<MethodInvoker>>> invokers = new ConcurrentHashMap<>();
+
+    /**
+     * Registers {@code invoker} under {@code className}, unless an invoker with the
+     * same name and parameter types is already there.
+     */
+    boolean register(String className, MethodInvoker invoker) {
+        List<MethodInvoker> overloads = invokers
+                .computeIfAbsent(className, _ -> new ConcurrentHashMap<>())
+                .computeIfAbsent(invoker.descriptor().methodName(), _ -> new CopyOnWriteArrayList<>());
+
+        synchronized (overloads) {
+            for (MethodInvoker existing : overloads) {
+                if (Arrays.equals(existing.paramTypeNames(), invoker.paramTypeNames())) {
+                    return false;
+                }
+            }
+            overloads.add(invoker);
+            return true;
+        }
+    }
+
+    MethodInvoker find(InvocationRequest request) {
+        var methods = invokers.get(request.targetClass());
+        if (methods == null) {
+            return null;
+        }
+        var overloads = methods.get(request.targetMethod());
+        if (overloads == null) {
+            return null;
+        }
+        for (MethodInvoker invoker : overloads) {
+            if (request.hasParamTypes(invoker.paramTypeNames())) {
+                return invoker;
+            }
+        }
+        return null;
+    }
+}
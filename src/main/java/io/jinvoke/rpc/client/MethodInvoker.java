@@ -0,0 +1,98 @@
+package io.jinvoke.rpc.client;
+
+import com.alibaba.fastjson2.util.TypeUtils;
+import io.jinvoke.rpc.config.Rpc;
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.metrics.RpcMetrics;
+import io.jinvoke.rpc.model.RpcMethodDescriptor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * An {@code @Rpc} method bound once to its service instance, as a spreading
+ * {@link MethodHandle} of type {@code (Object[])Object}.
+ */
+final class MethodInvoker {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final RpcMethodDescriptor descriptor;
+    private final String[] paramTypeNames;
+    private final Class<?>[] paramTypes;
+    private final Class<?>[] boxedParamTypes;
+    private final MethodHandle handle;
+    private final Rpc.Execution execution;
+    private final CallMetrics calls;
+
+    private MethodInvoker(RpcMethodDescriptor descriptor, Class<?>[] paramTypes, MethodHandle handle,
+                          Rpc.Execution execution, CallMetrics calls) {
+        this.descriptor = descriptor;
+        this.paramTypeNames = descriptor.paramTypes();
+        this.paramTypes = paramTypes;
+        this.boxedParamTypes = MethodType.methodType(void.class, paramTypes).wrap().parameterArray();
+        this.handle = handle;
+        this.execution = execution;
+        this.calls = calls;
+    }
+
+    /**
+     * @param metrics where the invocations of the method are recorded, under its method id
+     */
+    static MethodInvoker bind(Method method, Object instance, RpcMetrics metrics) throws IllegalAccessException {
+        method.trySetAccessible();
+        MethodHandle handle = LOOKUP.unreflect(method);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            handle = handle.bindTo(instance);
+        }
+        handle = handle
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(SPREAD_TYPE);
+
+        Rpc rpc = method.getAnnotation(Rpc.class);
+        RpcMethodDescriptor descriptor = RpcMethodDescriptor.from(method);
+        return new MethodInvoker(descriptor, method.getParameterTypes(), handle,
+                rpc != null ? rpc.execution() : Rpc.Execution.DEFAULT,
+                metrics.calls(RpcMetrics.Side.TARGET, descriptor.methodId()));
+    }
+
+    RpcMethodDescriptor descriptor() {
+        return descriptor;
+    }
+
+    String[] paramTypeNames() {
+        return paramTypeNames;
+    }
+
+    Rpc.Execution execution() {
+        return execution;
+    }
+
+    CallMetrics calls() {
+        return calls;
+    }
+
+    Class<?>[] parameterTypes() {
+        return paramTypes.clone();
+    }
+
+    Object invoke(Object[] args) throws Throwable {
+        coerce(args);
+        return (Object) handle.invokeExact(args);
+    }
+
+    // Generic serializers may hand us an Integer for a long or a JSON object for a POJO
+    private void coerce(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg != null && !boxedParamTypes[i].isInstance(arg)) {
+                args[i] = BinaryValues.isBinary(paramTypes[i])
+                        ? BinaryValues.fromWire(arg, paramTypes[i])
+                        : TypeUtils.cast(arg, paramTypes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.InvocationResult;
+import io.jinvoke.rpc.util.PendingTable;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.BaseStream;
+
+/**
+ * The result of a streaming invocation on the target side, sent as one STREAM
+ * frame per element and closed by a RESULT frame.
+ * <p>
+ * Elements are only sent against credit granted by the caller, so a slow
+ * consumer holds the producer back instead of filling buffers on three hosts.
+ * {@link Iterator}s and {@link java.util.stream.Stream}s are pulled on a worker
+ * thread that blocks while no credit is left; a {@link Flow.Publisher} is asked
+ * for exactly as many elements as the caller granted.
+ */
+final class OutboundStream {
+    private static final Logger log = LoggerFactory.getLogger(OutboundStream.class);
+
+    // channel -> streams being sent on it, keyed by the request id they answer
+    private static final AttributeKey<PendingTable<OutboundStream>> STREAMS = AttributeKey.valueOf("outboundStreams");
+
+    private final Channel channel;
+    private final long requestId;
+    // An element the channel could not take, e.g. one over the payload limit, fails the stream
+    private final ChannelFutureListener failOnError = f -> {
+        if (!f.isSuccess() && f.channel().isActive()) {
+            complete(f.cause());
+        }
+    };
+
+    // guarded by this
+    private Runnable onDone;
+    private long credit;
+    private boolean cancelled;
+    private boolean finished;
+    private Flow.Subscription subscription;
+
+    private OutboundStream(Channel channel, long requestId) {
+        this.channel = channel;
+        this.requestId = requestId;
+    }
+
+    /**
+     * Registers the stream answering {@code requestId} before the method runs,
+     * so credit granted in the meantime is not lost.
+     */
+    static OutboundStream open(Channel channel, long requestId) {
+        OutboundStream stream = new OutboundStream(channel, requestId);
+        streams(channel).put(requestId, stream);
+        if (!channel.isActive()) {
+            stream.cancel();
+        }
+        return stream;
+    }
+
+    /**
+     * Sends {@code result} as the stream's elements.
+     *
+     * @param executor runs blocking pulls when called on the event loop
+     * @param onDone   runs once the stream ended, however it ended
+     */
+    void start(Object result, Executor executor, Runnable onDone) {
+        synchronized (this) {
+            this.onDone = onDone;
+            if (finished) {
+                // Cancelled while the method ran
+                if (result instanceof AutoCloseable resource) {
+                    close(resource);
+                }
+                onDone.run();
+                return;
+            }
+        }
+
+        try {
+            switch (result) {
+                case Flow.Publisher<?> publisher -> publisher.subscribe(new Subscriber());
+                case BaseStream<?, ?> elements -> pull(elements.iterator(), elements, executor);
+                case Iterator<?> iterator -> pull(iterator, null, executor);
+                case Iterable<?> iterable -> pull(iterable.iterator(), null, executor);
+                case null -> complete(null);
+                default -> pull(List.of(result).iterator(), null, executor);
+            }
+        } catch (RuntimeException e) {
+            complete(e);
+        }
+    }
+
+    /**
+     * Ends the stream with {@code error} before any element was sent.
+     */
+    void fail(Throwable error) {
+        complete(error);
+    }
+
+    /**
+     * Applies a CREDIT frame from the caller.
+     */
+    static void credit(Channel channel, long requestId, long amount) {
+        PendingTable<OutboundStream> streams = channel.attr(STREAMS).get();
+        OutboundStream stream = streams == null ? null : streams.get(requestId);
+        if (stream == null) {
+            log.debug("No stream for credit: {}", requestId);
+        } else if (amount < 0) {
+            stream.cancel();
+        } else {
+            stream.grant(amount);
+        }
+    }
+
+    private static PendingTable<OutboundStream> streams(Channel channel) {
+        PendingTable<OutboundStream> streams = channel.attr(STREAMS).get();
+        if (streams == null) {
+            PendingTable<OutboundStream> created = new PendingTable<>();
+            streams = channel.attr(STREAMS).setIfAbsent(created);
+            if (streams == null) {
+                streams = created;
+                channel.closeFuture().addListener(f -> created.removeAll().forEach(OutboundStream::cancel));
+            }
+        }
+        return streams;
+    }
+
+    private void grant(long amount) {
+        Flow.Subscription s;
+        synchronized (this) {
+            credit += amount;
+            notifyAll();
+            s = subscription;
+        }
+        if (s != null) {
+            s.request(amount);
+        }
+    }
+
+    private void cancel() {
+        Flow.Subscription s;
+        synchronized (this) {
+            cancelled = true;
+            notifyAll();
+            s = subscription;
+        }
+        if (s != null) {
+            s.cancel();
+        }
+        finish();
+    }
+
+    private void pull(Iterator<?> iterator, AutoCloseable resource, Executor executor) {
+        Runnable task = () -> {
+            Throwable error = null;
+            try {
+                while (awaitCredit() && iterator.hasNext()) {
+                    channel.writeAndFlush(Frame.stream(requestId, iterator.next())).addListener(failOnError);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e;
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                close(resource);
+            }
+            complete(error);
+        };
+        if (channel.eventLoop().inEventLoop()) {
+            executor.execute(task);
+        } else {
+            task.run();
+        }
+    }
+
+    // Takes one credit, waiting for the caller to grant one; false once cancelled
+    private synchronized boolean awaitCredit() throws InterruptedException {
+        while (credit == 0 && !cancelled) {
+            wait();
+        }
+        if (cancelled) {
+            return false;
+        }
+        credit--;
+        return true;
+    }
+
+    private void complete(Throwable error) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+        InvocationResult result = error == null
+                ? InvocationResult.success(requestId, null)
+                : InvocationResult.failure(requestId, error);
+        channel.writeAndFlush(Frame.result(result));
+        if (error != null) {
+            log.error("Stream failed: {}", requestId, error);
+        }
+        finish();
+    }
+
+    private void finish() {
+        Runnable done;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            done = onDone;
+        }
+        channel.attr(STREAMS).get().remove(requestId);
+        if (done != null) {
+            done.run();
+        }
+    }
+
+    private static void close(AutoCloseable resource) {
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Failed to close streamed result", e);
+            }
+        }
+    }
+
+    private final class Subscriber implements Flow.Subscriber<Object> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            long granted;
+            synchronized (OutboundStream.this) {
+                if (cancelled) {
+                    s.cancel();
+                    return;
+                }
+                subscription = s;
+                granted = credit;
+            }
+            if (granted > 0) {
+                s.request(granted);
+            }
+        }
+
+        @Override
+        public void onNext(Object item) {
+            channel.writeAndFlush(Frame.stream(requestId, item)).addListener(failOnError);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            complete(error);
+        }
+
+        @Override
+        public void onComplete() {
+            complete(null);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.netty.channel.Channel;
+import io.netty.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calls made while no connection to the hub is up, held until one is registered
+ * again and then sent on it in the order they were made. At most
+ * {@code capacity} calls are held: one that finds the buffer full fails right
+ * away, and one still held when its timeout runs out fails with a
+ * {@link TimeoutException}. A replayed call keeps what is left of its timeout.
+ */
+final class ReplayBuffer {
+    private static final Logger log = LoggerFactory.getLogger(ReplayBuffer.class);
+
+    private final RpcClient client;
+    private final Timer timer;
+    private final int capacity;
+    private final Queue<Held> held = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private record Held(InvocationRequest request, CompletableFuture<Object> future, long deadline,
+                        CallMetrics calls) {
+    }
+
+    /**
+     * @param capacity calls held at most; {@code 0} holds none
+     */
+    ReplayBuffer(RpcClient client, Timer timer, int capacity) {
+        this.client = client;
+        this.timer = timer;
+        this.capacity = capacity;
+    }
+
+    boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the future of {@code request}, completed once it was replayed and
+     * answered, or failed if it cannot be held or is not replayed in time
+     */
+    CompletableFuture<Object> hold(InvocationRequest request, long timeout, TimeUnit unit, CallMetrics calls) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            future.completeExceptionally(new IllegalStateException(
+                    "RPC client not connected, " + capacity + " calls already waiting to be replayed"));
+            return future;
+        }
+        Held entry = new Held(request, future, System.nanoTime() + unit.toNanos(timeout), calls);
+        held.add(entry);
+        // Failed or cancelled while held: it must not take up room until the next connection
+        future.whenComplete((_, error) -> {
+            if (error != null && held.remove(entry)) {
+                size.decrementAndGet();
+            }
+        });
+        timer.newTimeout(_ -> {
+            if (held.contains(entry)) {
+                future.completeExceptionally(new TimeoutException(
+                        "Not reconnected within " + unit.toMillis(timeout) + " ms"));
+            }
+        }, timeout, unit);
+        return future;
+    }
+
+    /**
+     * Sends every held call on {@code channel}, which just registered.
+     */
+    void replay(Channel channel) {
+        int replayed = 0;
+        Held entry;
+        while ((entry = held.poll()) != null) {
+            size.decrementAndGet();
+            if (entry.future().isDone()) {
+                continue;
+            }
+            long remaining = entry.deadline() - System.nanoTime();
+            if (remaining <= 0) {
+                entry.future().completeExceptionally(new TimeoutException("Not reconnected in time"));
+                continue;
+            }
+            send(channel, entry, remaining);
+            replayed++;
+        }
+        if (replayed > 0) {
+            channel.flush();
+            log.info("Replayed {} calls made while reconnecting", replayed);
+        }
+    }
+
+    /**
+     * Fails every held call, e.g. as the client shuts down.
+     */
+    void fail(Throwable cause) {
+        Held entry;
+        while ((entry = held.poll()) != null) {
+            size.decrementAndGet();
+            entry.future().completeExceptionally(cause);
+        }
+    }
+
+    private void send(Channel channel, Held entry, long remainingNanos) {
+        long requestId = entry.request().requestId();
+        client.trackRequest(channel, requestId, entry.future(), remainingNanos, TimeUnit.NANOSECONDS, entry.calls());
+        channel.write(Frame.invoke(entry.request())).addListener(f -> {
+            if (!f.isSuccess()) {
+                client.removeRequest(requestId);
+                entry.future().completeExceptionally(f.cause());
+            }
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.protocol.Frame;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results answering the requests of one BATCH frame. Results are sent from
+ * the event loop as soon as the first of them is added, together with every
+ * other result added by then, so results completing together go out as one
+ * batch and a slow call never holds the others back.
+ */
+final class ResultBatch {
+    private final Channel channel;
+
+    // guarded by this; null while nothing waits to be sent
+    private List<Frame> results;
+    private List<ChannelPromise> promises;
+
+    ResultBatch(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @return completed once the result was written, or failed with the batch
+     */
+    ChannelFuture add(Frame result) {
+        ChannelPromise promise = channel.newPromise();
+        boolean first;
+        synchronized (this) {
+            first = results == null;
+            if (first) {
+                results = new ArrayList<>();
+                promises = new ArrayList<>();
+            }
+            results.add(result);
+            promises.add(promise);
+        }
+        if (first) {
+            channel.eventLoop().execute(this::send);
+        }
+        return promise;
+    }
+
+    private void send() {
+        List<Frame> frames;
+        List<ChannelPromise> waiting;
+        synchronized (this) {
+            frames = results;
+            waiting = promises;
+            results = null;
+            promises = null;
+        }
+        if (frames.size() == 1) {
+            channel.writeAndFlush(frames.getFirst(), waiting.getFirst());
+            return;
+        }
+        channel.writeAndFlush(Frame.batch(frames)).addListener(f -> {
+            if (f.isSuccess()) {
+                waiting.forEach(ChannelPromise::setSuccess);
+                return;
+            }
+            // A batch is written whole or not at all: one result it could not take,
+            // e.g. one over the payload limit, must not fail the others
+            for (int i = 0; i < frames.size(); i++) {
+                channel.writeAndFlush(frames.get(i), waiting.get(i));
+            }
+        });
+    }
+}
@@ -0,0 +1,361 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.metrics.CacheMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Results of one proxy method cached on the caller, keyed on the target and the
+ * canonical JSON form of the arguments, and bounded by size and time to live.
+ * <p>
+ * Eviction follows W-TinyLFU: new entries enter a small LRU window; entries
+ * falling out of it compete with the least recently used entry of the main
+ * space, and whichever a frequency sketch saw asked for less often is dropped.
+ * The main space is a segmented LRU whose protected part holds the entries hit
+ * again while on probation. This keeps a burst of one-off lookups from flushing
+ * the reference data that is asked for all the time.
+ * <p>
+ * Lookups read a concurrent map and never wait: recording the access in the
+ * eviction policy is skipped while another thread holds the lock, which only
+ * blurs the frequencies a little.
+ */
+final class ResultCache {
+    /**
+     * Returned by {@link #get} when nothing is cached.
+     */
+    static final Object MISS = new Object();
+
+    // Stands in for a cached null result
+    private static final Object NULL = new Object();
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final String className;
+    private final String methodName;
+    private final int maxSize;
+    private final int windowMax;
+    private final int protectedMax;
+    private final long ttlNanos;
+    private final CacheMetrics metrics;
+    private final ConcurrentHashMap<Key, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private final FrequencySketch sketch;
+    private final Node[] queues = {Node.sentinel(), Node.sentinel(), Node.sentinel()};
+    private final int[] sizes = new int[3];
+    private final Node writeOrder = Node.sentinel();
+
+    // written under lock; results of calls started before an invalidation are not cached
+    private volatile long generation;
+
+    /**
+     * @param ttlNanos {@code 0} for entries that do not expire
+     */
+    ResultCache(String className, String methodName, int maxSize, long ttlNanos, CacheMetrics metrics) {
+        this.className = className;
+        this.methodName = methodName;
+        this.maxSize = Math.max(1, maxSize);
+        this.windowMax = Math.max(1, this.maxSize / 100);
+        this.protectedMax = Math.max(1, (this.maxSize - windowMax) * 4 / 5);
+        this.ttlNanos = ttlNanos;
+        this.metrics = metrics;
+        this.sketch = new FrequencySketch(this.maxSize);
+    }
+
+    boolean caches(String className, String methodName) {
+        return this.className.equals(className) && (methodName == null || this.methodName.equals(methodName));
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    /**
+     * @return the cached result, or {@link #MISS}
+     */
+    Object get(String target, String args) {
+        Node node = data.get(new Key(target, args));
+        if (node == null) {
+            metrics.miss();
+            return MISS;
+        }
+        if (expired(node, System.nanoTime())) {
+            lock.lock();
+            try {
+                if (!node.removed) {
+                    remove(node);
+                    metrics.eviction();
+                }
+            } finally {
+                lock.unlock();
+            }
+            metrics.miss();
+            return MISS;
+        }
+        if (lock.tryLock()) {
+            try {
+                if (!node.removed) {
+                    onAccess(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        metrics.hit();
+        Object value = node.value;
+        return value == NULL ? null : value;
+    }
+
+    /**
+     * @return what to hand to {@link #put} for a call about to be sent
+     */
+    long stamp() {
+        return generation;
+    }
+
+    /**
+     * Caches the result of a call sent at {@code stamp}, unless results were
+     * invalidated since.
+     */
+    void put(String target, String args, Object value, long stamp) {
+        Key key = new Key(target, args);
+        Object stored = value == null ? NULL : value;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (stamp != generation) {
+                return;
+            }
+            expire(now);
+            Node node = data.get(key);
+            if (node != null) {
+                node.value = stored;
+                node.expiresAt = now + ttlNanos;
+                unlinkWrite(node);
+                linkWrite(node);
+                onAccess(node);
+                return;
+            }
+            node = new Node(key, stored, now + ttlNanos);
+            data.put(key, node);
+            sketch.increment(key.hashCode());
+            link(WINDOW, node);
+            linkWrite(node);
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the results for {@code args}, or all of them if that is {@code null}.
+     */
+    void invalidate(String args) {
+        lock.lock();
+        try {
+            generation++;
+            for (Node node : data.values()) {
+                if (args == null || args.equals(node.key.args())) {
+                    remove(node);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean expired(Node node, long now) {
+        return ttlNanos > 0 && now - node.expiresAt >= 0;
+    }
+
+    // With one time to live for all entries, the oldest write expires first
+    private void expire(long now) {
+        Node oldest;
+        while ((oldest = writeOrder.writeNext) != writeOrder && expired(oldest, now)) {
+            remove(oldest);
+            metrics.eviction();
+        }
+    }
+
+    private void onAccess(Node node) {
+        sketch.increment(node.key.hashCode());
+        switch (node.queue) {
+            case WINDOW, PROTECTED -> {
+                unlink(node);
+                link(node.queue, node);
+            }
+            case PROBATION -> {
+                unlink(node);
+                link(PROTECTED, node);
+                while (sizes[PROTECTED] > protectedMax) {
+                    Node demoted = queues[PROTECTED].next;
+                    unlink(demoted);
+                    link(PROBATION, demoted);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown queue: " + node.queue);
+        }
+    }
+
+    private void evict() {
+        while (sizes[WINDOW] > windowMax) {
+            Node candidate = queues[WINDOW].next;
+            unlink(candidate);
+            link(PROBATION, candidate);
+        }
+        while (data.size() > maxSize) {
+            Node probation = queues[PROBATION];
+            Node evicted;
+            if (probation.next != probation) {
+                // The newest entry on probation against the one there longest
+                Node victim = probation.next;
+                Node candidate = probation.prev;
+                evicted = candidate != victim
+                        && sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())
+                        ? victim : candidate;
+            } else if (queues[PROTECTED].next != queues[PROTECTED]) {
+                evicted = queues[PROTECTED].next;
+            } else {
+                evicted = queues[WINDOW].next;
+            }
+            remove(evicted);
+            metrics.eviction();
+        }
+    }
+
+    private void remove(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+        unlinkWrite(node);
+        node.removed = true;
+    }
+
+    private void link(int queue, Node node) {
+        Node sentinel = queues[queue];
+        node.queue = queue;
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        sizes[queue]++;
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        sizes[node.queue]--;
+    }
+
+    private void linkWrite(Node node) {
+        node.writePrev = writeOrder.writePrev;
+        node.writeNext = writeOrder;
+        writeOrder.writePrev.writeNext = node;
+        writeOrder.writePrev = node;
+    }
+
+    private void unlinkWrite(Node node) {
+        node.writePrev.writeNext = node.writeNext;
+        node.writeNext.writePrev = node.writePrev;
+    }
+
+    private record Key(String target, String args) {
+    }
+
+    private static final class Node {
+        final Key key;
+        volatile Object value;
+        volatile boolean removed;
+
+        // guarded by the cache's lock
+        long expiresAt;
+        int queue;
+        Node prev;
+        Node next;
+        Node writePrev;
+        Node writeNext;
+
+        Node(Key key, Object value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        static Node sentinel() {
+            Node sentinel = new Node(null, null, 0);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            sentinel.writePrev = sentinel;
+            sentinel.writeNext = sentinel;
+            return sentinel;
+        }
+    }
+
+    /**
+     * Count-min sketch of how often keys were asked for, with four 4-bit counters
+     * per key. All counters are halved once as many increments as ten times the
+     * cache size were made, so old popularity fades.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            int length = Integer.highestOneBit(Math.max(8, maxSize - 1) << 1);
+            table = new long[length];
+            mask = length - 1;
+            sampleSize = 10 * Math.max(8, maxSize);
+        }
+
+        int frequency(int hash) {
+            hash = spread(hash);
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int offset = (start + i) << 2;
+                frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & 0xF));
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            hash = spread(hash);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                if (((table[index] >>> offset) & 0xF) != 0xF) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        private static int spread(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 17);
+        }
+    }
+}
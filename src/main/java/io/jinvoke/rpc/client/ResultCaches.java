@@ -0,0 +1,54 @@
+package io.jinvoke.rpc.client;
+
+import com.alibaba.fastjson2.JSON;
+import io.jinvoke.rpc.config.RpcCache;
+import io.jinvoke.rpc.metrics.RpcMetrics;
+import io.jinvoke.rpc.protocol.Invalidation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The result caches of one client's proxies, one per method id, shared by all
+ * proxies for the same interface.
+ */
+final class ResultCaches {
+    private static final Object[] NO_ARGS = {};
+
+    private final RpcMetrics metrics;
+    private final Map<String, ResultCache> caches = new ConcurrentHashMap<>();
+
+    ResultCaches(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the cache of {@code methodId}, created as {@code config} says on first use
+     */
+    ResultCache cache(String methodId, String className, String methodName, RpcCache config) {
+        return caches.computeIfAbsent(methodId, _ -> {
+            ResultCache[] cache = {null};
+            cache[0] = new ResultCache(className, methodName, config.maxSize(), config.unit().toNanos(config.ttl()),
+                    metrics.cache(methodId, () -> cache[0].size()));
+            return cache[0];
+        });
+    }
+
+    /**
+     * Drops the cached results {@code invalidation} names, whichever target they came from.
+     */
+    void invalidate(Invalidation invalidation) {
+        for (ResultCache cache : caches.values()) {
+            if (cache.caches(invalidation.targetClass(), invalidation.targetMethod())) {
+                cache.invalidate(invalidation.args());
+            }
+        }
+    }
+
+    /**
+     * @return the form of {@code args} results are cached under on every client
+     */
+    static String argsKey(Object[] args) {
+        return JSON.toJSONString(args == null ? NO_ARGS : args);
+    }
+}
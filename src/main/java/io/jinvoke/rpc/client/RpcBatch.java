@@ -0,0 +1,156 @@
+package io.jinvoke.rpc.client;
+
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.netty.channel.Channel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls collected on one thread and sent together, in BATCH frames, when the
+ * batch is flushed or closed. Opened by {@link RpcProxyFactory#batch()}:
+ * <pre>{@code
+ * List<CompletableFuture<Price>> prices = new ArrayList<>();
+ * try (RpcBatch _ = proxies.batch()) {
+ *     for (String sku : skus) {
+ *         prices.add(pricing.priceAsync(sku));
+ *     }
+ * }
+ * CompletableFuture.allOf(prices.toArray(CompletableFuture[]::new)).join();
+ * }</pre>
+ * Only asynchronous and one-way calls are collected; their futures complete once
+ * the batch was sent and the results arrived, so they must not be waited for
+ * inside the batch. Any other call first sends what was collected and then goes
+ * out on its own. Calls through the server share one connection and are split by
+ * target there; calls to targets reached directly go out on their connections.
+ * Timeouts run from the call, not from the flush.
+ * <p>
+ * Batches nest: closing the inner one sends its calls, and the outer one is
+ * current again.
+ */
+public final class RpcBatch implements AutoCloseable {
+    private static final ThreadLocal<RpcBatch> CURRENT = new ThreadLocal<>();
+
+    private final RpcClient client;
+    private final RpcBatch outer;
+    private final Map<Channel, List<InvocationRequest>> requests = new LinkedHashMap<>();
+    private Channel hubChannel;
+    private boolean closed;
+
+    private RpcBatch(RpcClient client, RpcBatch outer) {
+        this.client = client;
+        this.outer = outer;
+    }
+
+    static RpcBatch open(RpcClient client) {
+        RpcBatch batch = new RpcBatch(client, CURRENT.get());
+        CURRENT.set(batch);
+        return batch;
+    }
+
+    /**
+     * @return the innermost batch the current thread opened for {@code client}, or {@code null}
+     */
+    static RpcBatch current(RpcClient client) {
+        for (RpcBatch batch = CURRENT.get(); batch != null; batch = batch.outer) {
+            if (batch.client == client) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the connection calls for {@code targetClientId} are collected for:
+     * a direct one when it is up, otherwise the one shared by all calls through
+     * the server
+     */
+    Channel channelFor(String targetClientId) {
+        Channel direct = client.directChannel(targetClientId);
+        if (direct != null) {
+            return direct;
+        }
+        if (hubChannel == null || !hubChannel.isActive()) {
+            hubChannel = client.channel();
+        }
+        return hubChannel;
+    }
+
+    /**
+     * Collects a call awaiting a result and starts tracking it.
+     */
+    CompletableFuture<Object> call(Channel channel, InvocationRequest request, long timeout, TimeUnit unit,
+                                   CallMetrics calls) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        client.trackRequest(channel, request.requestId(), future, timeout, unit, calls);
+        requests.computeIfAbsent(channel, _ -> new ArrayList<>()).add(request);
+        return future;
+    }
+
+    /**
+     * Collects a one-way call.
+     */
+    void send(Channel channel, InvocationRequest request) {
+        requests.computeIfAbsent(channel, _ -> new ArrayList<>()).add(request);
+    }
+
+    /**
+     * Sends the calls collected so far; the batch stays open.
+     */
+    public void flush() {
+        requests.forEach(this::write);
+        requests.clear();
+    }
+
+    /**
+     * Sends the calls collected and makes the enclosing batch current again.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (CURRENT.get() == this) {
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+        flush();
+    }
+
+    private void write(Channel channel, List<InvocationRequest> batch) {
+        if (batch.size() == 1) {
+            write(channel, batch.getFirst());
+            return;
+        }
+        List<Frame> frames = new ArrayList<>(batch.size());
+        batch.forEach(request -> frames.add(Frame.invoke(request)));
+        channel.writeAndFlush(Frame.batch(frames)).addListener(f -> {
+            if (!f.isSuccess()) {
+                // Written whole or not at all: send the calls one by one, so that
+                // one the batch could not take fails alone
+                batch.forEach(request -> write(channel, request));
+            }
+        });
+    }
+
+    private void write(Channel channel, InvocationRequest request) {
+        channel.writeAndFlush(Frame.invoke(request)).addListener(f -> {
+            if (!f.isSuccess()) {
+                CompletableFuture<?> future = client.removeRequest(request.requestId());
+                if (future != null) {
+                    future.completeExceptionally(f.cause());
+                }
+            }
+        });
+    }
+}
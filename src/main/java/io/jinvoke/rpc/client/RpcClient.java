@@ -1,103 +1,356 @@
 package io.jinvoke.rpc.client;
 
+import io.jinvoke.rpc.codec.Compression;
 import io.jinvoke.rpc.codec.FrameCodec;
+import io.jinvoke.rpc.codec.Serializers;
 import io.jinvoke.rpc.config.Rpc;
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.metrics.MicrometerMetrics;
+import io.jinvoke.rpc.metrics.RpcMetrics;
 import io.jinvoke.rpc.model.RpcMethodDescriptor;
 import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.Invalidation;
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.jinvoke.rpc.protocol.Lookup;
+import io.jinvoke.rpc.protocol.Registration;
+import io.jinvoke.rpc.transport.FlushCoalescingHandler;
+import io.jinvoke.rpc.transport.LivenessHandler;
+import io.jinvoke.rpc.transport.Transport;
+import io.jinvoke.rpc.transport.TransportOptions;
+import io.jinvoke.rpc.util.PendingTable;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioIoHandler;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.util.ClassUtils;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-public class RpcClient implements SmartInitializingSingleton {
+public class RpcClient implements SmartInitializingSingleton, BeanFactoryAware {
     private static final Logger log = LoggerFactory.getLogger(RpcClient.class);
+    private static final String METER_REGISTRY = "io.micrometer.core.instrument.MeterRegistry";
 
     private final Map<String, RpcMethodDescriptor> methods = new ConcurrentHashMap<>();
-    private final Map<String, CompletableFuture<?>> pendingRequests = new ConcurrentHashMap<>();
+    private final InvokerRegistry invokers = new InvokerRegistry();
+    private final PendingTable<Pending> pendingRequests = new PendingTable<>();
+    private final PendingTable<InboundStream> streams = new PendingTable<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final LongAdder expiredRequests = new LongAdder();
+    private final RpcMetrics metrics = new RpcMetrics();
+    private final ResultCaches caches = new ResultCaches(metrics);
+    private final InFlightCalls inFlightCalls = new InFlightCalls();
+    private final HashedWheelTimer timer =
+            new HashedWheelTimer(new DefaultThreadFactory("jinvoke-rpc-timer", true), 10, TimeUnit.MILLISECONDS);
 
     @Value("${jinvoke.rpc.client.host:localhost}")
-    private String host;
+    private String host = "localhost";
 
     @Value("${jinvoke.rpc.client.port:8080}")
-    private int port;
+    private int port = 8080;
+
+    @Value("${jinvoke.rpc.client.serializer:binary}")
+    private String serializer = "binary";
+
+    @Value("${jinvoke.rpc.client.group:}")
+    private String group = "";
+
+    @Value("${jinvoke.rpc.client.connections:1}")
+    private int connections = 1;
+
+    @Value("${jinvoke.rpc.client.balancing:least-pending}")
+    private String balancing = "least-pending";
+
+    @Value("${jinvoke.rpc.client.transport:auto}")
+    private String transport = "auto";
+
+    @Value("${jinvoke.rpc.client.worker-threads:0}")
+    private int workerThreads = 0;
+
+    @Value("${jinvoke.rpc.client.tcp-no-delay:true}")
+    private boolean tcpNoDelay = true;
+
+    @Value("${jinvoke.rpc.client.send-buffer-size:0}")
+    private int sendBufferSize = 0;
+
+    @Value("${jinvoke.rpc.client.receive-buffer-size:0}")
+    private int receiveBufferSize = 0;
+
+    @Value("${jinvoke.rpc.client.compression-threshold:16384}")
+    private int compressionThreshold = 16384;
+
+    @Value("${jinvoke.rpc.client.chunk-size:262144}")
+    private int chunkSize = 262144;
+
+    @Value("${jinvoke.rpc.client.max-payload-size:67108864}")
+    private int maxPayloadSize = 67108864;
+
+    @Value("${jinvoke.rpc.client.reassembly-limit:268435456}")
+    private long reassemblyLimit = 268435456;
+
+    @Value("${jinvoke.rpc.client.stream.window:256}")
+    private int streamWindow = 256;
+
+    @Value("${jinvoke.rpc.client.direct.enabled:false}")
+    private boolean directEnabled = false;
+
+    @Value("${jinvoke.rpc.client.direct.port:0}")
+    private int directPort = 0;
+
+    @Value("${jinvoke.rpc.client.flush.max-batch:64}")
+    private int flushMaxBatch = 64;
+
+    @Value("${jinvoke.rpc.client.flush.max-delay-micros:0}")
+    private long flushMaxDelayMicros = 0;
+
+    @Value("${jinvoke.rpc.client.execution.mode:virtual}")
+    private String executionMode = "virtual";
+
+    @Value("${jinvoke.rpc.client.execution.pool-size:0}")
+    private int executionPoolSize = 0;
+
+    @Value("${jinvoke.rpc.client.execution.max-concurrency:1024}")
+    private int executionMaxConcurrency = 1024;
+
+    @Value("${jinvoke.rpc.client.metrics.jmx:true}")
+    private boolean metricsJmx = true;
+
+    @Value("${jinvoke.rpc.client.liveness.idle-time-millis:15000}")
+    private long livenessIdleTimeMillis = 15000;
+
+    @Value("${jinvoke.rpc.client.liveness.max-missed-pings:3}")
+    private int maxMissedPings = 3;
+
+    @Value("${jinvoke.rpc.client.reconnect.initial-delay-millis:20}")
+    private long reconnectInitialDelayMillis = 20;
+
+    @Value("${jinvoke.rpc.client.reconnect.max-delay-millis:5000}")
+    private long reconnectMaxDelayMillis = 5000;
+
+    @Value("${jinvoke.rpc.client.reconnect.buffer-size:0}")
+    private int reconnectBufferSize = 0;
 
     private String clientId;
     private String[] scanPackages;
 
-    private Channel channel;
+    private HubConnections hub;
+    private ReplayBuffer replay;
     private EventLoopGroup workerGroup;
+    private TransportOptions options;
+    private Transport resolvedTransport;
+    private Bootstrap bootstrap;
+    private volatile boolean closing;
+    private BeanFactory beanFactory;
+    private InvocationExecutor executor;
+    private DirectChannels direct;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
 
     @Override
     public void afterSingletonsInstantiated() {
+        executor = new InvocationExecutor(
+                Rpc.Execution.valueOf(executionMode.toUpperCase(Locale.ROOT)),
+                executionPoolSize,
+                executionMaxConcurrency);
         scanRpcMethods();
-        startAsync();
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections must be positive: " + connections);
+        }
+        if (streamWindow < 1) {
+            throw new IllegalArgumentException("stream.window must be positive: " + streamWindow);
+        }
+        if (reconnectInitialDelayMillis < 1 || reconnectMaxDelayMillis < reconnectInitialDelayMillis) {
+            throw new IllegalArgumentException("reconnect delays must be positive and max-delay at least initial-delay: "
+                    + reconnectInitialDelayMillis + ", " + reconnectMaxDelayMillis);
+        }
+        hub = new HubConnections(HubConnections.Balancing.valueOf(
+                balancing.toUpperCase(Locale.ROOT).replace('-', '_')));
+        replay = new ReplayBuffer(this, timer, Math.max(0, reconnectBufferSize));
+        publishMetrics();
+        start();
     }
 
-    private void startAsync() {
-        CompletableFuture.runAsync(this::connect)
-                .exceptionally(ex -> {
-                    log.error("Failed to start RPC client", ex);
-                    return null;
-                });
+    private void publishMetrics() {
+        metrics.inFlight(clientId, pendingRequests::size);
+        if (metricsJmx) {
+            metrics.registerMBean("Client", clientId);
+        }
+        // Micrometer is optional: its classes are only touched when present
+        if (beanFactory != null && ClassUtils.isPresent(METER_REGISTRY, RpcClient.class.getClassLoader())) {
+            MicrometerMetrics.bindTo(beanFactory, metrics, "client", clientId);
+        }
     }
 
-    private void connect() {
-        workerGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
-
+    private void startDirect() {
+        direct = new DirectChannels(this, resolvedTransport, workerGroup, Serializers.byName(serializer));
         try {
-            Bootstrap bootstrap = new Bootstrap()
-                    .group(workerGroup)
-                    .channel(NioSocketChannel.class)
-                    .option(ChannelOption.SO_KEEPALIVE, true)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ch.pipeline()
-                                    .addLast(new FrameCodec())
-                                    .addLast(new ClientFrameHandler(RpcClient.this));
+            directPort = direct.listen(directPort);
+        } catch (Exception e) {
+            log.error("Direct connections disabled, cannot listen on port {}", directPort, e);
+            direct.shutdown();
+            direct = null;
+            directPort = 0;
+        }
+    }
+
+    private Transport transport() {
+        return Transport.valueOf(transport.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    private void start() {
+        options = TransportOptions.defaults()
+                .transport(transport())
+                .workerThreads(workerThreads)
+                .tcpNoDelay(tcpNoDelay)
+                .sendBufferSize(sendBufferSize)
+                .receiveBufferSize(receiveBufferSize)
+                .flushMaxBatch(flushMaxBatch)
+                .flushMaxDelay(flushMaxDelayMicros, TimeUnit.MICROSECONDS)
+                .chunkSize(chunkSize)
+                .maxPayloadSize(maxPayloadSize)
+                .reassemblyLimit(reassemblyLimit)
+                .livenessIdleTime(livenessIdleTimeMillis, TimeUnit.MILLISECONDS)
+                .maxMissedPings(maxMissedPings);
+        resolvedTransport = options.transport().resolve();
+        // One group for the life of the client: hub connections, reconnects and direct connections
+        workerGroup = new MultiThreadIoEventLoopGroup(options.workerThreads(), resolvedTransport.ioHandlerFactory());
+
+        bootstrap = new Bootstrap()
+                .group(workerGroup)
+                .channel(resolvedTransport.channelClass())
+                .handler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        FlushCoalescingHandler flush = newFlushHandler();
+                        if (flush != null) {
+                            ch.pipeline().addLast(flush);
                         }
-                    });
+                        ch.pipeline()
+                                .addLast(newFrameCodec())
+                                .addLast(options.newLivenessHandler())
+                                .addLast(new ClientFrameHandler(RpcClient.this));
+                    }
+                });
 
-            ChannelFuture future = bootstrap.connect(host, port).sync();
-            channel = future.channel();
-            log.info("Connected to {}:{}", host, port);
+        if (resolvedTransport.isSocket()) {
+            bootstrap.option(ChannelOption.SO_KEEPALIVE, true)
+                    .option(ChannelOption.TCP_NODELAY, options.tcpNoDelay());
+            if (options.sendBufferSize() > 0) {
+                bootstrap.option(ChannelOption.SO_SNDBUF, options.sendBufferSize());
+            }
+            if (options.receiveBufferSize() > 0) {
+                bootstrap.option(ChannelOption.SO_RCVBUF, options.receiveBufferSize());
+            }
+        }
 
-            channel.writeAndFlush(Frame.register(clientId))
+        if (directEnabled) {
+            startDirect();
+        }
+        // Each connection is kept up on its own; the hub keeps them as one session
+        for (int i = 0; i < connections; i++) {
+            connect(0);
+        }
+    }
+
+    /**
+     * Opens a connection to the hub and registers it, retrying with backoff
+     * until it is up.
+     *
+     * @param attempt connection attempts that failed in a row before this one
+     */
+    private void connect(int attempt) {
+        if (closing) {
+            return;
+        }
+        bootstrap.connect(resolvedTransport.address(host, port)).addListener((ChannelFuture future) -> {
+            if (!future.isSuccess()) {
+                long delay = reconnectDelayMillis(attempt);
+                if (attempt == 0) {
+                    log.warn("Connection to {}:{} failed, retrying in {} ms: {}",
+                            host, port, delay, future.cause().getMessage());
+                } else {
+                    log.debug("Connection attempt {} to {}:{} failed, retrying in {} ms",
+                            attempt + 1, host, port, delay);
+                }
+                scheduleConnect(attempt + 1, delay);
+                return;
+            }
+            Channel channel = future.channel();
+            log.info("Connected to {}:{} ({})", host, port, resolvedTransport);
+            channel.closeFuture().addListener(f -> disconnected(channel));
+            channel.writeAndFlush(Frame.register(new Registration(clientId, serializer,
+                            compressionThreshold > 0 ? Compression.DEFLATE : null,
+                            direct != null ? directPort : 0,
+                            group.isBlank() ? null : group)))
                     .addListener(f -> {
                         if (f.isSuccess()) {
-                            log.info("Client registered: {}", clientId);
+                            log.info("Registration sent: {}", clientId);
                         }
                     });
+        });
+    }
 
-            channel.closeFuture().sync();
-            log.warn("Disconnected from server");
-        } catch (Exception e) {
-            log.error("Connection failed: {}", e.getMessage());
-            reconnect();
+    // Calls awaiting a result on the connection fail now rather than at their timeout
+    private void disconnected(Channel channel) {
+        hub.remove(channel);
+        failPendingRequests(channel, new IllegalStateException("Disconnected from server"));
+        if (!closing) {
+            long delay = reconnectDelayMillis(0);
+            log.warn("Disconnected from server, reconnecting in {} ms", delay);
+            scheduleConnect(0, delay);
         }
     }
 
-    private void reconnect() {
-        try {
-            TimeUnit.SECONDS.sleep(5);
-            connect();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    private void scheduleConnect(int attempt, long delayMillis) {
+        if (!closing) {
+            workerGroup.schedule(() -> connect(attempt), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter: a random delay between half and all of a
+     * ceiling that doubles with every failed attempt, so clients that lost the
+     * same hub do not all come back at once.
+     */
+    private long reconnectDelayMillis(int attempt) {
+        long ceiling = reconnectInitialDelayMillis << Math.min(attempt, 30);
+        if (ceiling <= 0 || ceiling > reconnectMaxDelayMillis) {
+            ceiling = reconnectMaxDelayMillis;
         }
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * Starts sending calls on {@code channel}, whose registration the hub just
+     * confirmed, beginning with those held while reconnecting.
+     */
+    void registered(Channel channel) {
+        hub.add(channel);
+        replay.replay(channel);
     }
 
     private void scanRpcMethods() {
@@ -110,12 +363,15 @@ public class RpcClient implements SmartInitializingSingleton {
             scanner.findCandidateComponents(pkg).forEach(bd -> {
                 try {
                     Class<?> clazz = Class.forName(bd.getBeanClassName());
-                    Arrays.stream(clazz.getDeclaredMethods())
+                    List<Method> rpcMethods = Arrays.stream(clazz.getDeclaredMethods())
                             .filter(m -> m.isAnnotationPresent(Rpc.class))
-                            .forEach(m -> {
-                                var desc = RpcMethodDescriptor.from(m);
-                                methods.put(desc.methodId(), desc);
-                            });
+                            .toList();
+                    if (rpcMethods.isEmpty()) return;
+
+                    Object instance = serviceInstance(clazz, rpcMethods);
+                    for (Method m : rpcMethods) {
+                        registerInvoker(clazz, MethodInvoker.bind(m, instance, metrics));
+                    }
                 } catch (Exception e) {
                     log.error("Failed to scan class: {}", bd.getBeanClassName(), e);
                 }
@@ -125,8 +381,80 @@ public class RpcClient implements SmartInitializingSingleton {
         log.info("Registered {} RPC methods", methods.size());
     }
 
+    /**
+     * Spring bean for {@code clazz} when there is exactly one, otherwise a single
+     * instance created through the no-arg constructor and reused for every call.
+     */
+    private Object serviceInstance(Class<?> clazz, List<Method> rpcMethods) throws ReflectiveOperationException {
+        if (rpcMethods.stream().allMatch(m -> Modifier.isStatic(m.getModifiers()))) {
+            return null;
+        }
+        if (beanFactory != null) {
+            Object bean = beanFactory.getBeanProvider(clazz).getIfUnique();
+            if (bean != null) {
+                return bean;
+            }
+        }
+        var constructor = clazz.getDeclaredConstructor();
+        constructor.trySetAccessible();
+        return constructor.newInstance();
+    }
+
+    // Also expose the method under each interface declaring it, so callers can
+    // generate proxies from a shared interface rather than the implementation class
+    private void registerInvoker(Class<?> clazz, MethodInvoker invoker) {
+        var desc = invoker.descriptor();
+        methods.put(desc.methodId(), desc);
+        invokers.register(clazz.getName(), invoker);
+
+        for (Class<?> iface : ClassUtils.getAllInterfacesForClassAsSet(clazz)) {
+            try {
+                iface.getMethod(desc.methodName(), invoker.parameterTypes());
+                if (!invokers.register(iface.getName(), invoker)) {
+                    log.warn("{} is already bound for {}, skipping {}", desc.signature(), iface.getName(), clazz.getName());
+                }
+            } catch (NoSuchMethodException ignored) {
+                // Not part of this interface
+            }
+        }
+    }
+
+    /**
+     * @return the hub connection for the next call, chosen by the balancing policy
+     */
     public Channel channel() {
-        return channel;
+        return hub != null ? hub.select() : null;
+    }
+
+    /**
+     * Channel to send requests for {@code targetClientId} on: a direct channel when
+     * one is up, a hub connection otherwise.
+     */
+    public Channel channelFor(String targetClientId) {
+        Channel directChannel = directChannel(targetClientId);
+        return directChannel != null ? directChannel : channel();
+    }
+
+    /**
+     * @return the active direct channel to {@code targetClientId}, or {@code null}
+     */
+    Channel directChannel(String targetClientId) {
+        return direct != null ? direct.channelFor(targetClientId) : null;
+    }
+
+    /**
+     * Asks the hub where {@code targetClientId} accepts direct connections.
+     */
+    CompletableFuture<Lookup> lookup(String targetClientId) {
+        Channel channel = channel();
+        if (channel == null || !channel.isActive()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("RPC client not connected"));
+        }
+        long id = nextRequestId();
+        CompletableFuture<Lookup> future = new CompletableFuture<>();
+        trackRequest(channel, id, future, 5, TimeUnit.SECONDS);
+        channel.writeAndFlush(Frame.lookup(id, Lookup.request(targetClientId)));
+        return future;
     }
 
     public String clientId() {
@@ -137,21 +465,268 @@ public class RpcClient implements SmartInitializingSingleton {
         return Map.copyOf(methods);
     }
 
-    public void trackRequest(String requestId, CompletableFuture<?> future) {
-        pendingRequests.put(requestId, future);
+    InvokerRegistry invokers() {
+        return invokers;
+    }
+
+    int compressionThreshold() {
+        return compressionThreshold;
+    }
+
+    int maxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    FrameCodec newFrameCodec() {
+        return new FrameCodec(false, chunkSize, maxPayloadSize, reassemblyLimit, metrics);
+    }
+
+    /**
+     * @return the flush coalescing of the connections to the hub and the direct ones,
+     * or {@code null} when flushes are not coalesced
+     */
+    FlushCoalescingHandler newFlushHandler() {
+        return options.newFlushHandler();
+    }
+
+    LivenessHandler newLivenessHandler() {
+        return new LivenessHandler(TimeUnit.MILLISECONDS.toNanos(livenessIdleTimeMillis), maxMissedPings);
+    }
+
+    /**
+     * @return latencies of the calls made and served, calls in flight, and the
+     * frames and bytes sent and received
+     */
+    public RpcMetrics metrics() {
+        return metrics;
+    }
+
+    ResultCaches caches() {
+        return caches;
+    }
+
+    InFlightCalls inFlightCalls() {
+        return inFlightCalls;
+    }
+
+    ReplayBuffer replay() {
+        return replay;
+    }
+
+    /**
+     * Tells every client to drop the results of {@code service}, the interface
+     * its callers use, that they cached.
+     */
+    public void invalidate(Class<?> service) {
+        invalidate(new Invalidation(clientId, service.getName(), null, null));
+    }
+
+    /**
+     * Tells every client to drop the results of {@code method} of {@code service}
+     * that they cached, for any arguments.
+     */
+    public void invalidate(Class<?> service, String method) {
+        invalidate(new Invalidation(clientId, service.getName(), method, null));
+    }
+
+    /**
+     * Tells every client to drop the result of {@code method} of {@code service}
+     * for {@code args} that they cached; arguments match by their JSON form.
+     */
+    public void invalidate(Class<?> service, String method, Object... args) {
+        invalidate(new Invalidation(clientId, service.getName(), method, ResultCaches.argsKey(args)));
+    }
+
+    private void invalidate(Invalidation invalidation) {
+        caches.invalidate(invalidation);
+        Channel channel = channel();
+        if (channel == null || !channel.isActive()) {
+            log.warn("Invalidation of {}#{} not sent: not connected",
+                    invalidation.targetClass(), invalidation.targetMethod());
+            return;
+        }
+        channel.writeAndFlush(Frame.invalidate(invalidation));
+    }
+
+    InvocationExecutor executor() {
+        return executor;
+    }
+
+    public long nextRequestId() {
+        return requestIds.incrementAndGet();
+    }
+
+    /**
+     * Tracks a call sent on {@code channel} awaiting its result; it fails with a
+     * {@link TimeoutException} unless the result arrives within {@code timeout}, and
+     * as soon as {@code channel} closes.
+     */
+    public void trackRequest(Channel channel, long requestId, CompletableFuture<?> future, long timeout, TimeUnit unit) {
+        trackRequest(channel, requestId, future, timeout, unit, null);
+    }
+
+    /**
+     * Same as {@link #trackRequest(Channel, long, CompletableFuture, long, TimeUnit)},
+     * recording how long the call took and how it ended in {@code calls} unless
+     * that is {@code null}.
+     */
+    void trackRequest(Channel channel, long requestId, CompletableFuture<?> future, long timeout, TimeUnit unit,
+                      CallMetrics calls) {
+        long start = System.nanoTime();
+        pendingRequests.put(requestId, new Pending(future, channel));
+        HubConnections.started(channel);
+        Timeout expiry = timer.newTimeout(_ -> {
+            if (pendingRequests.remove(requestId) != null) {
+                expiredRequests.increment();
+                future.completeExceptionally(new TimeoutException("No result within " + unit.toMillis(timeout) + " ms"));
+            }
+        }, timeout, unit);
+
+        // Cancelled or failed calls must not linger in the pending table
+        future.whenComplete((_, error) -> {
+            expiry.cancel();
+            HubConnections.finished(channel);
+            if (calls != null) {
+                calls.record(start, error);
+            }
+            if (error != null) {
+                pendingRequests.remove(requestId);
+            }
+        });
+    }
+
+    /**
+     * Sends {@code request}, which must be streaming, on {@code channel} together
+     * with the first credit, and tracks the stream answering it. Elements that
+     * stop arriving for {@code timeout} fail the stream.
+     */
+    InboundStream openStream(Channel channel, InvocationRequest request, long timeout, TimeUnit unit,
+                             CallMetrics calls) {
+        long start = System.nanoTime();
+        long requestId = request.requestId();
+        InboundStream stream = new InboundStream(channel, requestId, streamWindow, unit.toNanos(timeout));
+        streams.put(requestId, stream);
+        pendingRequests.put(requestId, new Pending(stream.completion(), channel));
+        HubConnections.started(channel);
+        stream.completion().whenComplete((_, error) -> {
+            streams.remove(requestId);
+            HubConnections.finished(channel);
+            calls.record(start, error);
+            if (error != null) {
+                pendingRequests.remove(requestId);
+            }
+        });
+
+        channel.write(Frame.invoke(request));
+        channel.writeAndFlush(Frame.credit(requestId, stream.initialCredit()))
+                .addListener(f -> {
+                    if (!f.isSuccess()) {
+                        stream.completion().completeExceptionally(f.cause());
+                    }
+                });
+        stream.startIdleTimer(timer);
+        return stream;
+    }
+
+    InboundStream stream(long requestId) {
+        return streams.get(requestId);
+    }
+
+    public CompletableFuture<?> removeRequest(long requestId) {
+        Pending pending = pendingRequests.remove(requestId);
+        return pending != null ? pending.future() : null;
+    }
+
+    public int pendingRequestCount() {
+        return pendingRequests.size();
     }
 
-    public CompletableFuture<?> removeRequest(String requestId) {
-        return pendingRequests.remove(requestId);
+    /**
+     * @return calls failed because no result arrived within their timeout
+     */
+    public long expiredRequestCount() {
+        return expiredRequests.sum();
+    }
+
+    /**
+     * @return the smoothed round-trip time to the server over the fastest
+     * connection in nanoseconds, or {@code -1} while none has been measured
+     */
+    public long roundTripNanos() {
+        long lowest = -1;
+        for (Channel channel : hub.all()) {
+            long roundTrip = LivenessHandler.roundTripNanos(channel);
+            if (roundTrip >= 0 && (lowest < 0 || roundTrip < lowest)) {
+                lowest = roundTrip;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Fails the calls awaiting a result on {@code channel}, which closed.
+     */
+    void failPendingRequests(Channel channel, Throwable cause) {
+        List<Pending> pending = pendingRequests.removeIf(p -> p.channel() == channel);
+        if (!pending.isEmpty()) {
+            log.warn("Failing {} pending requests: {}", pending.size(), cause.getMessage());
+            pending.forEach(p -> p.future().completeExceptionally(cause));
+        }
     }
 
     @PreDestroy
     public void shutdown() {
-        if (channel != null) channel.close();
+        closing = true;
+        if (replay != null) replay.fail(new IllegalStateException("RPC client shut down"));
+        if (hub != null) hub.close();
+        if (direct != null) direct.shutdown();
         if (workerGroup != null) workerGroup.shutdownGracefully();
+        if (executor != null) executor.shutdown();
+        timer.stop();
+        metrics.unregisterMBean();
         log.info("RPC Client shutdown");
     }
 
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public void setSerializer(String serializer) {
+        this.serializer = serializer;
+    }
+
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    public void setBalancing(String balancing) {
+        this.balancing = balancing;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public void setMaxPayloadSize(int maxPayloadSize) {
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    public void setDirectEnabled(boolean directEnabled) {
+        this.directEnabled = directEnabled;
+    }
+
     public void setClientId(String clientId) {
         this.clientId = clientId;
     }
@@ -159,4 +734,8 @@ public class RpcClient implements SmartInitializingSingleton {
     public void setScanPackages(String[] scanPackages) {
         this.scanPackages = scanPackages;
     }
+
+    // A call awaiting its result and the connection it was sent on
+    private record Pending(CompletableFuture<?> future, Channel channel) {
+    }
 }
@@ -1,16 +1,66 @@
 package io.jinvoke.rpc.client;
 
+import com.alibaba.fastjson2.util.TypeUtils;
+import io.jinvoke.rpc.config.RoutingKey;
+import io.jinvoke.rpc.config.RpcCache;
+import io.jinvoke.rpc.config.RpcCoalesce;
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.metrics.RpcMetrics;
+import io.jinvoke.rpc.model.RpcMethodDescriptor;
 import io.jinvoke.rpc.protocol.Frame;
 import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.netty.channel.Channel;
 import org.springframework.stereotype.Component;
 
+import java.io.InputStream;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Creates client-side proxies for remote services.
+ * <p>
+ * Methods declared to return {@link CompletableFuture} or {@link CompletionStage}
+ * return the pending future immediately; the timeout is applied to the future
+ * rather than by blocking. Results complete futures on the Netty event loop, so
+ * dependent stages doing real work should use the {@code *Async} variants.
+ * Methods returning {@link Stream}, {@link Iterator} or {@link Flow.Publisher}
+ * receive the result as a stream of elements the target sends as they are
+ * consumed; the timeout then bounds the wait for each next element. Closing the
+ * {@code Stream} or cancelling the subscription stops the target. A publisher is
+ * cold: each subscription invokes the method again.
+ * All other methods block the caller until the result arrives or the timeout expires.
+ * <p>
+ * The target may be a client id or a service group name; a parameter annotated
+ * with {@link RoutingKey} pins calls with equal values to one group instance.
+ * <p>
+ * Asynchronous and one-way calls made inside a {@link #batch()} are collected
+ * and sent together when it closes.
+ * <p>
+ * Results of methods annotated with {@link RpcCache}, or declared by an
+ * interface that is, are served from a cache on this client while fresh.
+ * Identical calls to methods annotated with {@link RpcCoalesce} share the one
+ * in flight.
+ */
 @Component
 public class RpcProxyFactory {
 
@@ -20,57 +70,329 @@ public class RpcProxyFactory {
         this.client = client;
     }
 
+    /**
+     * Opens a batch collecting the asynchronous and one-way calls the current
+     * thread makes through this factory's proxies until it is closed.
+     */
+    public RpcBatch batch() {
+        return RpcBatch.open(client);
+    }
+
     public <T> T generate(Class<T> clazz, String requestClientId) {
         return generate(clazz, requestClientId, 30, TimeUnit.SECONDS);
     }
 
     @SuppressWarnings("unchecked")
     public <T> T generate(Class<T> clazz, String requestClientId, long timeout, TimeUnit unit) {
+        Map<Method, RemoteMethod> remoteMethods = new ConcurrentHashMap<>();
+
         return (T) Proxy.newProxyInstance(
                 Thread.currentThread().getContextClassLoader(),
                 new Class[]{clazz},
                 (_, method, args) -> {
-                    // Check connection
-                    if (client.channel() == null || !client.channel().isActive()) {
-                        throw new IllegalStateException("RPC client not connected");
+                    RemoteMethod remote = remoteMethods.computeIfAbsent(method,
+                            m -> RemoteMethod.of(clazz, m, client));
+
+                    ResultCache cache = remote.cache();
+                    String argsKey = cache != null || remote.coalesced() ? ResultCaches.argsKey(args) : null;
+                    if (cache != null) {
+                        Object cached = cache.get(requestClientId, argsKey);
+                        if (cached != ResultCache.MISS) {
+                            Object value = remote.fromWire(cached);
+                            return remote.kind() == Kind.ASYNC ? CompletableFuture.completedFuture(value) : value;
+                        }
                     }
+                    long cacheStamp = cache == null ? 0 : cache.stamp();
 
-                    String[] paramTypes = Arrays.stream(method.getParameterTypes())
-                            .map(Class::getName)
-                            .toArray(String[]::new);
+                    RpcBatch batch = RpcBatch.current(client);
+                    boolean batched = batch != null && (remote.kind() == Kind.ASYNC || remote.kind() == Kind.ONE_WAY);
+                    if (batch != null && !batched) {
+                        // Its result is needed now, and the calls before it go first
+                        batch.flush();
+                    }
+
+                    // Check connection; while reconnecting, calls awaiting a result may be held for replay
+                    Channel channel = batched ? batch.channelFor(requestClientId) : client.channelFor(requestClientId);
+                    boolean connected = channel != null && channel.isActive();
+                    boolean held = !connected && !batched && client.replay().isEnabled()
+                            && (remote.kind() == Kind.BLOCKING || remote.kind() == Kind.ASYNC);
+                    if (!connected && !held) {
+                        var error = new IllegalStateException("RPC client not connected");
+                        if (remote.kind() == Kind.ASYNC) {
+                            return CompletableFuture.failedFuture(error);
+                        }
+                        throw error;
+                    }
 
                     var request = InvocationRequest.of(
+                            client.nextRequestId(),
                             requestClientId,
                             clazz.getName(),
                             method.getName(),
-                            args,
-                            paramTypes,
-                            method.getReturnType().getName());
+                            remote.toWire(args, client.maxPayloadSize()),
+                            remote.paramTypes(),
+                            remote.returnType(),
+                            remote.routingKey(args));
 
-                    if (method.getReturnType() == void.class) {
-                        client.channel().writeAndFlush(Frame.invoke(request));
-                        return null;
+                    // Completed along with the call this one leads, which identical calls may join
+                    CompletableFuture<Object> shared = null;
+                    if (remote.coalesced()) {
+                        shared = new CompletableFuture<>();
+                        CompletableFuture<Object> inFlight = client.inFlightCalls()
+                                .join(remote.calls().name(), requestClientId, argsKey, shared);
+                        if (inFlight != null) {
+                            // Waits no longer than a call of its own would, whatever the one it joined was given
+                            return result(remote, inFlight.copy().orTimeout(timeout, unit));
+                        }
                     }
 
-                    CompletableFuture<Object> future = new CompletableFuture<>();
-                    client.trackRequest(request.requestId(), future);
+                    if (batched && remote.kind() == Kind.ONE_WAY) {
+                        batch.send(channel, request);
+                        return null;
+                    }
 
-                    client.channel().writeAndFlush(Frame.invoke(request))
-                            .addListener(f -> {
-                                if (!f.isSuccess()) {
-                                    client.removeRequest(request.requestId());
-                                    future.completeExceptionally(f.cause());
-                                }
-                            });
+                    switch (remote.kind()) {
+                        case ONE_WAY -> {
+                            channel.writeAndFlush(Frame.invoke(request));
+                            return null;
+                        }
+                        case STREAM -> {
+                            InboundStream stream =
+                                    client.openStream(channel, request.asStreaming(), timeout, unit, remote.calls());
+                            return StreamSupport.stream(
+                                    Spliterators.spliteratorUnknownSize(stream.iterator(), Spliterator.ORDERED), false)
+                                    .onClose(stream::cancel);
+                        }
+                        case ITERATOR -> {
+                            return client.openStream(channel, request.asStreaming(), timeout, unit, remote.calls())
+                                    .iterator();
+                        }
+                        case PUBLISHER -> {
+                            return publisher(request.asStreaming(), requestClientId, timeout, unit, remote.calls());
+                        }
+                        default -> {
+                        }
+                    }
 
+                    CompletableFuture<Object> future;
                     try {
-                        return future.get(timeout, unit);
-                    } catch (TimeoutException e) {
+                        if (batched) {
+                            future = batch.call(channel, request, timeout, unit, remote.calls());
+                        } else if (held) {
+                            future = client.replay().hold(request, timeout, unit, remote.calls());
+                        } else {
+                            future = invoke(channel, request, timeout, unit, remote.calls());
+                        }
+                    } catch (Throwable e) {
+                        // The calls that joined this one wait on shared, which fails along with it
+                        if (shared != null) {
+                            shared.completeExceptionally(e);
+                        }
+                        throw e;
+                    }
+                    cacheResult(future, cache, requestClientId, argsKey, cacheStamp);
+                    return result(remote, share(future, shared));
+                });
+    }
+
+    // The pending future of an asynchronous method, the awaited result of any other
+    private static Object result(RemoteMethod remote, CompletableFuture<Object> future) throws Throwable {
+        if (remote.kind() == Kind.ASYNC) {
+            if (remote.resultType() == Object.class) {
+                return future;
+            }
+            CompletableFuture<Object> converted = future.thenApply(remote::fromWire);
+            // Cancelling the caller's future must still reach the tracked call
+            converted.whenComplete((_, error) -> {
+                if (error instanceof CancellationException) {
+                    future.cancel(false);
+                }
+            });
+            return converted;
+        }
+        try {
+            return remote.fromWire(future.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException timeoutException) {
+                throw new RuntimeException("Request timed out", timeoutException);
+            }
+            throw e.getCause();
+        }
+    }
+
+    // Hands the result on to the calls that joined this one; each caller gets a future of its own
+    private static CompletableFuture<Object> share(CompletableFuture<Object> future, CompletableFuture<Object> shared) {
+        if (shared == null) {
+            return future;
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                shared.complete(value);
+            } else {
+                shared.completeExceptionally(error);
+            }
+        });
+        return shared.copy();
+    }
+
+    private CompletableFuture<Object> invoke(Channel channel, InvocationRequest request, long timeout, TimeUnit unit,
+                                             CallMetrics calls) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        client.trackRequest(channel, request.requestId(), future, timeout, unit, calls);
+
+        channel.writeAndFlush(Frame.invoke(request))
+                .addListener(f -> {
+                    if (!f.isSuccess()) {
                         client.removeRequest(request.requestId());
-                        throw new RuntimeException("Request timed out", e);
-                    } catch (ExecutionException e) {
-                        throw e.getCause();
+                        future.completeExceptionally(f.cause());
                     }
                 });
+
+        return future;
+    }
+
+    // Failures are never cached
+    private static void cacheResult(CompletableFuture<Object> future, ResultCache cache, String target, String args,
+                                    long stamp) {
+        if (cache != null) {
+            future.thenAccept(value -> cache.put(target, args, value, stamp));
+        }
+    }
+
+    // Every subscription sends the request again under a fresh id
+    private Flow.Publisher<Object> publisher(InvocationRequest request, String requestClientId,
+                                             long timeout, TimeUnit unit, CallMetrics calls) {
+        return subscriber -> {
+            Channel channel = client.channelFor(requestClientId);
+            if (channel == null || !channel.isActive()) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("RPC client not connected"));
+                return;
+            }
+            InvocationRequest next = request.withRequestId(client.nextRequestId());
+            client.openStream(channel, next, timeout, unit, calls).subscribe(subscriber);
+        };
+    }
+
+    private enum Kind {
+        BLOCKING, ASYNC, ONE_WAY, STREAM, ITERATOR, PUBLISHER
+    }
+
+    /**
+     * @param binaryParams whether any parameter is a {@link ByteBuffer} or {@link InputStream}
+     * @param resultType   the declared class of the result, or of the value of its future, boxed
+     * @param calls        where the calls are recorded, under the method id they are sent for
+     * @param cache        where results are cached, or {@code null}
+     * @param coalesced    whether identical calls in flight at once are sent once
+     */
+    private record RemoteMethod(String[] paramTypes, String returnType, Kind kind, int routingKeyIndex,
+                                boolean binaryParams, Class<?> resultType, CallMetrics calls, ResultCache cache,
+                                boolean coalesced) {
+
+        static RemoteMethod of(Class<?> clazz, Method method, RpcClient client) {
+            String[] paramTypes = Arrays.stream(method.getParameterTypes())
+                    .map(Class::getName)
+                    .toArray(String[]::new);
+            Class<?> returnClass = method.getReturnType();
+            int routingKeyIndex = routingKeyIndex(method);
+
+            Kind kind;
+            if (returnClass == CompletableFuture.class || returnClass == CompletionStage.class) {
+                kind = Kind.ASYNC;
+            } else if (returnClass == Stream.class) {
+                kind = Kind.STREAM;
+            } else if (returnClass == Iterator.class) {
+                kind = Kind.ITERATOR;
+            } else if (returnClass == Flow.Publisher.class) {
+                kind = Kind.PUBLISHER;
+            } else {
+                kind = returnClass == void.class ? Kind.ONE_WAY : Kind.BLOCKING;
+            }
+            // Futures and streams carry the type of their values
+            String returnType = kind == Kind.BLOCKING || kind == Kind.ONE_WAY
+                    ? returnClass.getName()
+                    : valueType(method.getGenericReturnType());
+            Class<?> resultClass = kind == Kind.ASYNC ? valueClass(method.getGenericReturnType()) : returnClass;
+            String methodId = new RpcMethodDescriptor(null, clazz.getName(), method.getName(), paramTypes,
+                    returnClass.getName()).methodId();
+            boolean binaryParams = Arrays.stream(method.getParameterTypes()).anyMatch(BinaryValues::isBinary);
+            RpcCache cacheConfig = method.isAnnotationPresent(RpcCache.class)
+                    ? method.getAnnotation(RpcCache.class)
+                    : clazz.getAnnotation(RpcCache.class);
+            RpcCoalesce coalesceConfig = method.isAnnotationPresent(RpcCoalesce.class)
+                    ? method.getAnnotation(RpcCoalesce.class)
+                    : clazz.getAnnotation(RpcCoalesce.class);
+            // A binary argument is read while sent, so it could not be compared with another
+            boolean keyed = !binaryParams && (kind == Kind.BLOCKING || kind == Kind.ASYNC);
+            boolean cached = keyed && cacheConfig != null && cacheConfig.enabled();
+            return new RemoteMethod(paramTypes, returnType, kind, routingKeyIndex, binaryParams,
+                    MethodType.methodType(resultClass).wrap().returnType(),
+                    client.metrics().calls(RpcMetrics.Side.CALLER, methodId),
+                    cached ? client.caches().cache(methodId, clazz.getName(), method.getName(), cacheConfig) : null,
+                    keyed && coalesceConfig != null && coalesceConfig.enabled());
+        }
+
+        Object[] toWire(Object[] args, int maxSize) {
+            if (!binaryParams) {
+                return args;
+            }
+            Object[] converted = args.clone();
+            for (int i = 0; i < converted.length; i++) {
+                converted[i] = BinaryValues.toWire(converted[i], maxSize);
+            }
+            return converted;
+        }
+
+        // Results arrive in generic form, e.g. an Integer for a long or a map for a record
+        Object fromWire(Object value) {
+            if (value == null || resultType.isInstance(value)) {
+                return value;
+            }
+            return BinaryValues.isBinary(resultType)
+                    ? BinaryValues.fromWire(value, resultType)
+                    : TypeUtils.cast(value, resultType);
+        }
+
+        String routingKey(Object[] args) {
+            if (routingKeyIndex < 0 || args[routingKeyIndex] == null) {
+                return null;
+            }
+            return args[routingKeyIndex].toString();
+        }
+
+        private static int routingKeyIndex(Method method) {
+            Parameter[] parameters = method.getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i].isAnnotationPresent(RoutingKey.class)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // CompletableFuture<Integer>, Stream<Integer> -> java.lang.Integer; unresolvable arguments -> Object
+        private static String valueType(Type futureType) {
+            return valueClass(futureType).getName();
+        }
+
+        private static Class<?> valueClass(Type futureType) {
+            if (futureType instanceof ParameterizedType parameterized
+                    && parameterized.getActualTypeArguments()[0] instanceof Class<?> valueClass) {
+                return valueClass;
+            }
+            if (futureType instanceof ParameterizedType parameterized
+                    && parameterized.getActualTypeArguments()[0] instanceof ParameterizedType valueType) {
+                return (Class<?>) valueType.getRawType();
+            }
+            return Object.class;
+        }
     }
 }
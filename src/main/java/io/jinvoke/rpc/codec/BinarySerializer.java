@@ -0,0 +1,428 @@
+package io.jinvoke.rpc.codec;
+
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.JSONWriter;
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.jinvoke.rpc.protocol.InvocationResult;
+import io.jinvoke.rpc.protocol.RemoteInvocationException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact schema-driven encoding.
+ * <p>
+ * Well-known type names travel as one-byte codes. Arguments whose declared type
+ * in {@code paramTypes} is primitive are written unboxed (zig-zag varints for
+ * integral types, fixed width for floating point) with no tag; all other values
+ * carry a one-byte tag. Lists, sets and maps are written element by element and
+ * read back as {@link ArrayList}, {@link LinkedHashSet} and {@link LinkedHashMap};
+ * any other object goes as fastjson2 JSONB without its class name and is read
+ * back in generic form. Values are never decoded into a class named on the wire:
+ * the receiver converts them to the types its own method declares.
+ * Strings are varint length-prefixed UTF-8.
+ */
+public final class BinarySerializer implements Serializer {
+    public static final byte ID = 1;
+    public static final String NAME = "binary";
+
+    // Index is the wire code; 0 means the type name follows as a string.
+    private static final String[] TYPE_NAMES = {
+            null, "void", "boolean", "byte", "short", "char", "int", "long", "float", "double",
+            "java.lang.String", "java.lang.Object", "java.lang.Boolean", "java.lang.Integer",
+            "java.lang.Long", "java.lang.Double", "[B", "java.util.List", "java.util.Map"
+    };
+    private static final Map<String, Integer> TYPE_CODES = new HashMap<>();
+
+    static {
+        for (int i = 1; i < TYPE_NAMES.length; i++) {
+            TYPE_CODES.put(TYPE_NAMES[i], i);
+        }
+    }
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_BYTE = 3;
+    private static final byte TAG_SHORT = 4;
+    private static final byte TAG_CHAR = 5;
+    private static final byte TAG_INT = 6;
+    private static final byte TAG_LONG = 7;
+    private static final byte TAG_FLOAT = 8;
+    private static final byte TAG_DOUBLE = 9;
+    private static final byte TAG_STRING = 10;
+    private static final byte TAG_BYTES = 11;
+    private static final byte TAG_OBJECT = 12;
+    private static final byte TAG_LIST = 13;
+    private static final byte TAG_SET = 14;
+    private static final byte TAG_MAP = 15;
+
+    // Containers nested deeper than this are refused rather than overflow the stack
+    private static final int MAX_DEPTH = 64;
+
+    private static final byte STATUS_SUCCESS = 0;
+    private static final byte STATUS_FAILURE = 1;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void writeRequest(InvocationRequest request, ByteBuf out) {
+        writeString(request.targetClass(), out);
+        writeString(request.targetMethod(), out);
+
+        String[] paramTypes = request.paramTypes();
+        Object[] params = request.params();
+        writeVarInt(paramTypes.length, out);
+        for (String type : paramTypes) {
+            writeType(type, out);
+        }
+        writeType(request.returnType(), out);
+        for (int i = 0; i < params.length; i++) {
+            writeParam(paramTypes[i], params[i], out);
+        }
+    }
+
+    @Override
+    public InvocationRequest readRequest(long requestId, String clientId, ByteBuf in) {
+        String targetClass = readString(in);
+        String targetMethod = readString(in);
+
+        String[] paramTypes = new String[readLength(in)];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramTypes[i] = readType(in);
+        }
+        String returnType = readType(in);
+        Object[] params = new Object[paramTypes.length];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = readParam(paramTypes[i], in);
+        }
+
+        return new InvocationRequest(requestId, clientId, targetClass, targetMethod,
+                params, paramTypes, returnType);
+    }
+
+    @Override
+    public void writeResult(InvocationResult result, ByteBuf out) {
+        switch (result) {
+            case InvocationResult.Success success -> {
+                out.writeByte(STATUS_SUCCESS);
+                writeValue(success.value(), out);
+            }
+            case InvocationResult.Failure failure -> {
+                out.writeByte(STATUS_FAILURE);
+                writeString(failure.errorType(), out);
+                writeString(failure.errorMessage(), out);
+            }
+        }
+    }
+
+    @Override
+    public InvocationResult readResult(long requestId, ByteBuf in) {
+        byte status = in.readByte();
+
+        return switch (status) {
+            case STATUS_SUCCESS -> InvocationResult.success(requestId, readValue(in, 0));
+            case STATUS_FAILURE -> InvocationResult.failure(requestId,
+                    RemoteInvocationException.of(readString(in), readString(in)));
+            default -> throw new IllegalArgumentException("Invalid result status: " + status);
+        };
+    }
+
+    // Numbers go through Number rather than a direct unboxing cast: a request
+    // re-encoded after a JSON hop may carry an Integer for a long parameter.
+    private static void writeParam(String type, Object value, ByteBuf out) {
+        switch (type) {
+            case "boolean" -> out.writeBoolean((Boolean) value);
+            case "byte" -> out.writeByte(((Number) value).byteValue());
+            case "short" -> writeVarInt(zigZag(((Number) value).shortValue()), out);
+            case "char" -> out.writeChar(value instanceof Character c ? c : value.toString().charAt(0));
+            case "int" -> writeVarInt(zigZag(((Number) value).intValue()), out);
+            case "long" -> writeVarLong(zigZag(((Number) value).longValue()), out);
+            case "float" -> out.writeFloat(((Number) value).floatValue());
+            case "double" -> out.writeDouble(((Number) value).doubleValue());
+            default -> writeValue(value, out);
+        }
+    }
+
+    private static Object readParam(String type, ByteBuf in) {
+        return switch (type) {
+            case "boolean" -> in.readBoolean();
+            case "byte" -> in.readByte();
+            case "short" -> (short) unZigZag(readVarInt(in));
+            case "char" -> in.readChar();
+            case "int" -> unZigZag(readVarInt(in));
+            case "long" -> unZigZag(readVarLong(in));
+            case "float" -> in.readFloat();
+            case "double" -> in.readDouble();
+            default -> readValue(in, 0);
+        };
+    }
+
+    private static void writeValue(Object value, ByteBuf out) {
+        switch (value) {
+            case null -> out.writeByte(TAG_NULL);
+            case Boolean b -> out.writeByte(b ? TAG_TRUE : TAG_FALSE);
+            case Byte b -> out.writeByte(TAG_BYTE).writeByte(b);
+            case Short s -> {
+                out.writeByte(TAG_SHORT);
+                writeVarInt(zigZag(s), out);
+            }
+            case Character c -> out.writeByte(TAG_CHAR).writeChar(c);
+            case Integer i -> {
+                out.writeByte(TAG_INT);
+                writeVarInt(zigZag(i), out);
+            }
+            case Long l -> {
+                out.writeByte(TAG_LONG);
+                writeVarLong(zigZag(l), out);
+            }
+            case Float f -> out.writeByte(TAG_FLOAT).writeFloat(f);
+            case Double d -> out.writeByte(TAG_DOUBLE).writeDouble(d);
+            case String s -> {
+                out.writeByte(TAG_STRING);
+                writeString(s, out);
+            }
+            case byte[] bytes -> {
+                out.writeByte(TAG_BYTES);
+                writeVarInt(bytes.length, out);
+                out.writeBytes(bytes);
+            }
+            case Set<?> set -> {
+                out.writeByte(TAG_SET);
+                writeElements(set, out);
+            }
+            case Collection<?> collection -> {
+                out.writeByte(TAG_LIST);
+                writeElements(collection, out);
+            }
+            case Map<?, ?> map -> {
+                out.writeByte(TAG_MAP);
+                writeVarInt(map.size(), out);
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey(), out);
+                    writeValue(entry.getValue(), out);
+                }
+            }
+            default -> {
+                out.writeByte(TAG_OBJECT);
+                writeJsonb(value, out);
+            }
+        }
+    }
+
+    private static void writeElements(Collection<?> elements, ByteBuf out) {
+        writeVarInt(elements.size(), out);
+        for (Object element : elements) {
+            writeValue(element, out);
+        }
+    }
+
+    private static Object readValue(ByteBuf in, int depth) {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_TRUE -> Boolean.TRUE;
+            case TAG_FALSE -> Boolean.FALSE;
+            case TAG_BYTE -> in.readByte();
+            case TAG_SHORT -> (short) unZigZag(readVarInt(in));
+            case TAG_CHAR -> in.readChar();
+            case TAG_INT -> unZigZag(readVarInt(in));
+            case TAG_LONG -> unZigZag(readVarLong(in));
+            case TAG_FLOAT -> in.readFloat();
+            case TAG_DOUBLE -> in.readDouble();
+            case TAG_STRING -> readString(in);
+            case TAG_BYTES -> {
+                byte[] bytes = new byte[readLength(in)];
+                in.readBytes(bytes);
+                yield bytes;
+            }
+            case TAG_OBJECT -> readObject(in);
+            case TAG_LIST -> {
+                int size = readSize(in, depth);
+                yield readElements(new ArrayList<>(size), size, in, depth);
+            }
+            case TAG_SET -> {
+                int size = readSize(in, depth);
+                yield readElements(new LinkedHashSet<>(size), size, in, depth);
+            }
+            case TAG_MAP -> {
+                int size = readSize(in, depth);
+                Map<Object, Object> map = new LinkedHashMap<>(size);
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in, depth + 1), readValue(in, depth + 1));
+                }
+                yield map;
+            }
+            default -> throw new IllegalArgumentException("Invalid value tag: " + tag);
+        };
+    }
+
+    private static Collection<Object> readElements(Collection<Object> elements, int size, ByteBuf in, int depth) {
+        for (int i = 0; i < size; i++) {
+            elements.add(readValue(in, depth + 1));
+        }
+        return elements;
+    }
+
+    private static int readSize(ByteBuf in, int depth) {
+        if (depth >= MAX_DEPTH) {
+            throw new IllegalArgumentException("Values nested deeper than " + MAX_DEPTH);
+        }
+        return readLength(in);
+    }
+
+    // A count of bytes or of values, each at least a byte long, so a forged one
+    // cannot size an array or container beyond what the frame holds
+    private static int readLength(ByteBuf in) {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.readableBytes()) {
+            throw new IllegalArgumentException("Invalid length: " + length);
+        }
+        return length;
+    }
+
+    // Straight from fastjson2's thread-cached buffer into the outbound one
+    private static void writeJsonb(Object value, ByteBuf out) {
+        try (JSONWriter writer = JSONWriter.ofJSONB()) {
+            writer.getObjectWriter(value.getClass()).writeJSONB(writer, value, null, null, 0);
+            writeVarInt(writer.size(), out);
+            writer.flushTo(new ByteBufOutputStream(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object readObject(ByteBuf in) {
+        int length = readLength(in);
+        byte[] bytes;
+        int offset;
+        if (in.hasArray()) {
+            bytes = in.array();
+            offset = in.arrayOffset() + in.readerIndex();
+        } else {
+            bytes = ByteBufUtil.getBytes(in, in.readerIndex(), length);
+            offset = 0;
+        }
+        in.skipBytes(length);
+
+        try (JSONReader reader = JSONReader.ofJSONB(bytes, offset, length)) {
+            return reader.readAny();
+        }
+    }
+
+    private static void writeType(String type, ByteBuf out) {
+        Integer code = type == null ? null : TYPE_CODES.get(type);
+        if (code != null) {
+            out.writeByte(code);
+        } else {
+            out.writeByte(0);
+            writeString(type, out);
+        }
+    }
+
+    private static String readType(ByteBuf in) {
+        int code = in.readUnsignedByte();
+        if (code == 0) {
+            return readString(in);
+        }
+        if (code >= TYPE_NAMES.length) {
+            throw new IllegalArgumentException("Invalid type code: " + code);
+        }
+        return TYPE_NAMES[code];
+    }
+
+    // Strings are prefixed with (byteLength + 1) so that 0 can encode null
+    private static void writeString(String s, ByteBuf out) {
+        if (s == null) {
+            out.writeByte(0);
+            return;
+        }
+        writeVarInt(ByteBufUtil.utf8Bytes(s) + 1, out);
+        ByteBufUtil.writeUtf8(out, s);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String s = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return s;
+    }
+
+    private static int zigZag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static int unZigZag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarInt(int v, ByteBuf out) {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static void writeVarLong(long v, ByteBuf out) {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static int readVarInt(ByteBuf in) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long readVarLong(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,140 @@
+package io.jinvoke.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Payload compression, negotiated per connection during REGISTER.
+ * <p>
+ * A compressed payload is flagged with {@link #FLAG} in the frame header and laid
+ * out as {@code [uncompressedLength:4][raw deflate]}. Only the payload is
+ * compressed; the routing header stays readable so the hub can route without
+ * inflating. Deflate runs straight between the buffers' NIO views, with one
+ * {@link Deflater}/{@link Inflater} per event-loop thread.
+ */
+public final class Compression {
+    public static final String DEFLATE = "deflate";
+
+    static final int FLAG = 0x10;
+
+    // Compression threshold in bytes of a connection whose peer accepted deflate
+    private static final AttributeKey<Integer> CHANNEL_THRESHOLD = AttributeKey.valueOf("compressionThreshold");
+
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED, true);
+        }
+
+        @Override
+        protected void onRemoval(Deflater deflater) {
+            deflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+
+        @Override
+        protected void onRemoval(Inflater inflater) {
+            inflater.end();
+        }
+    };
+
+    private Compression() {
+    }
+
+    /**
+     * Compresses payloads of at least {@code threshold} bytes written to {@code channel}.
+     */
+    public static void enable(Channel channel, int threshold) {
+        channel.attr(CHANNEL_THRESHOLD).set(threshold);
+    }
+
+    public static boolean isEnabled(Channel channel) {
+        return channel.attr(CHANNEL_THRESHOLD).get() != null;
+    }
+
+    static boolean shouldCompress(Channel channel, int length) {
+        Integer threshold = channel.attr(CHANNEL_THRESHOLD).get();
+        return threshold != null && length >= threshold;
+    }
+
+    static boolean isCompressed(byte flags) {
+        return (flags & FLAG) != 0;
+    }
+
+    /**
+     * Writes the readable bytes of {@code in} to {@code out} in compressed layout.
+     */
+    static void compress(ByteBuf in, ByteBuf out) {
+        Deflater deflater = DEFLATER.get();
+        try {
+            out.writeInt(in.readableBytes());
+            deflater.setInput(in.nioBuffer());
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.ensureWritable(Math.max(256, in.readableBytes() >>> 3));
+                ByteBuffer target = out.internalNioBuffer(out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + deflater.deflate(target));
+            }
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Inflates a compressed payload into a new buffer owned by the caller.
+     *
+     * @throws CorruptedFrameException if the payload is malformed or would inflate
+     *                                 beyond {@code maxLength} bytes
+     */
+    static ByteBuf decompress(ByteBufAllocator alloc, ByteBuf in, int maxLength) {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new CorruptedFrameException("Invalid uncompressed length: " + length);
+        }
+
+        // One spare byte tells a payload that inflates too far from one that fits exactly
+        ByteBuf out = alloc.buffer(length + 1);
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(in.nioBuffer());
+            while (!inflater.finished()) {
+                int window = length + 1 - out.writerIndex();
+                if (window == 0) {
+                    break;
+                }
+                int inflated = inflater.inflate(out.internalNioBuffer(out.writerIndex(), window));
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new CorruptedFrameException("Truncated compressed payload");
+                }
+                out.writerIndex(out.writerIndex() + inflated);
+            }
+            if (out.writerIndex() != length || !inflater.finished()) {
+                throw new CorruptedFrameException("Compressed payload does not inflate to " + length + " bytes");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            out.release();
+            throw new CorruptedFrameException("Malformed compressed payload", e);
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        } finally {
+            inflater.reset();
+        }
+    }
+}
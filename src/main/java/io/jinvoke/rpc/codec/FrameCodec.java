@@ -1,46 +1,234 @@
 package io.jinvoke.rpc.codec;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONObject;
+import io.jinvoke.rpc.metrics.RpcMetrics;
 import io.jinvoke.rpc.protocol.*;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageCodec;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
-import static io.jinvoke.rpc.protocol.Protocol.MessageType.HEARTBEAT;
+import static io.jinvoke.rpc.protocol.Protocol.MessageType.PING;
+import static io.jinvoke.rpc.protocol.Protocol.MessageType.PONG;
 
 /**
  * Combined Frame encoder/decoder for Netty pipeline.
- * Format: [type:1][length:4][payload:n]
+ * Format: [type:1][flags:1][requestId:8][length:4][routing:r][payload:n]
+ * <p>
+ * The low nibble of {@code flags} is the id of the {@link Serializer} that wrote
+ * the payload and {@link Compression#FLAG} marks a compressed payload. REGISTER
+ * payloads are always uncompressed JSON, since they are what negotiates the
+ * serializer and compression in the first place; so are the PRESENCE frames
+ * exchanged between hubs, LOOKUP frames and the INVALIDATE frames the hub passes
+ * on to every client.
+ * <p>
+ * {@code requestId} is assigned per connection by the sender and is
+ * {@link Frame#NO_ID} for frames outside a request/response exchange.
+ * {@code length} covers the routing header and the payload. The routing header is
+ * the target {@code [clientId]} as {@code [length:2][utf8]} for INVOKE/FORWARD and
+ * empty otherwise; an INVOKE flagged with {@link #ROUTING_KEY_FLAG} follows it with
+ * its {@code [routingKey]} in the same layout. {@link #STREAMING_FLAG} marks an
+ * INVOKE/FORWARD whose result comes back as STREAM frames, each carrying one
+ * element as a successful result, closed by a RESULT frame. CREDIT frames carry
+ * the caller's {@code [amount:8]}. PING and PONG frames have no payload; their
+ * {@code requestId} is the time the PING was sent, which the PONG echoes.
+ * <p>
+ * A request or result whose routing header and payload exceed the chunk size is
+ * sent as a first frame flagged with {@link #MORE_FLAG}, carrying the whole
+ * routing header, followed by CHUNK frames under the same request id. The routing
+ * header of a CHUNK is the {@code [type:1]} of the message it continues, and all
+ * but the last carry {@link #MORE_FLAG}; a last CHUNK without data aborts the
+ * message. Chunks of different messages may interleave. The receiving end
+ * reassembles them without copying, up to the maximum payload size per message
+ * and the reassembly limit per connection; a message over either is dropped and
+ * failed back to its sender. So is a request or result whose payload cannot be
+ * deserialized, and the connection stays open.
+ * <p>
+ * A BATCH frame carries requests or results sent together: its body is a run of
+ * complete INVOKE, FORWARD or RESULT frames, header included, none of them
+ * chunked. The sender closes a batch once it reaches the chunk size, and an entry
+ * that needs chunking follows the batch on its own.
+ * <p>
+ * In routing mode (the hub) INVOKE, RESULT, STREAM, CREDIT and CHUNK frames are
+ * decoded into {@link RoutedFrame}s whose payload is never deserialized, so the
+ * hub passes chunks on one by one and never holds a whole large message; a BATCH
+ * becomes a {@link RoutedBatch} of them.
  */
 public class FrameCodec extends ByteToMessageCodec<Frame> {
     private static final Logger log = LoggerFactory.getLogger(FrameCodec.class);
-    private static final int HEADER_SIZE = 5; // 1 byte type + 4 bytes length
+    static final int HEADER_SIZE = 14; // 1 byte type + 1 byte flags + 8 bytes requestId + 4 bytes length
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    public static final int DEFAULT_MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_REASSEMBLY_LIMIT = 256L * 1024 * 1024;
+    static final int ROUTING_KEY_FLAG = 0x20;
+    static final int STREAMING_FLAG = 0x40;
+    static final int MORE_FLAG = 0x80;
+    private static final int SERIALIZER_MASK = 0x0F;
+    // Two [length:2][utf8] strings of the routing header at their longest
+    private static final int MAX_ROUTING_HEADER = 2 * (2 + 0xFFFF);
+
+    private final boolean routing;
+    private final int chunkSize;
+    private final int maxPayloadSize;
+    private final long reassemblyLimit;
+    private final RpcMetrics metrics;
+
+    // Messages being reassembled, by request id; requests and results are numbered apart
+    private final Map<Long, Partial> requests = new HashMap<>();
+    private final Map<Long, Partial> results = new HashMap<>();
+    private long reassembling;
+
+    private record Partial(Protocol.MessageType type, byte flags, CompositeByteBuf body) {
+    }
+
+    public FrameCodec() {
+        this(false);
+    }
+
+    public FrameCodec(boolean routing) {
+        this(routing, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_PAYLOAD_SIZE, DEFAULT_REASSEMBLY_LIMIT);
+    }
+
+    /**
+     * @param chunkSize       largest routing header and payload sent in one frame
+     * @param maxPayloadSize  largest payload sent or accepted, however it is chunked
+     * @param reassemblyLimit bytes of partially received messages held per connection
+     */
+    public FrameCodec(boolean routing, int chunkSize, int maxPayloadSize, long reassemblyLimit) {
+        this(routing, chunkSize, maxPayloadSize, reassemblyLimit, null);
+    }
+
+    /**
+     * @param metrics counts the frames and bytes in and out, unless {@code null}
+     */
+    public FrameCodec(boolean routing, int chunkSize, int maxPayloadSize, long reassemblyLimit, RpcMetrics metrics) {
+        this.routing = routing;
+        this.chunkSize = chunkSize;
+        this.maxPayloadSize = maxPayloadSize;
+        this.reassemblyLimit = reassemblyLimit;
+        this.metrics = metrics;
+    }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, Frame frame, ByteBuf out) {
         try {
-            byte[] payload = frame.hasPayload()
-                    ? JSON.toJSONBytes(frame.payload())
-                    : new byte[0];
-
-            out.writeByte(frame.type().toByte());
-            out.writeInt(payload.length);
-            if (payload.length > 0) {
-                out.writeBytes(payload);
+            if (frame.payload() instanceof Batch batch) {
+                encodeBatch(ctx, batch, out);
+            } else {
+                encodeFrame(ctx, frame, out);
             }
-
-            log.debug("Encoded {}: {} bytes", frame.type(), payload.length);
         } catch (Exception e) {
             log.error("Encode failed: {}", frame, e);
             throw e;
         }
     }
 
+    private void encodeFrame(ChannelHandlerContext ctx, Frame frame, ByteBuf out) {
+        boolean control = isControl(frame.payload());
+        Serializer serializer = control ? Serializers.json() : Serializers.of(ctx.channel());
+
+        out.writeByte(frame.type().toByte());
+        int flagsIndex = out.writerIndex();
+        out.writeByte(serializer.id() & SERIALIZER_MASK);
+        out.writeLong(frame.messageId());
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+
+        int start = out.writerIndex();
+        if (frame.payload() instanceof InvocationRequest request) {
+            writeRoutingHeader(out, request.clientId(), request.routingKey());
+            if (request.routingKey() != null) {
+                out.setByte(flagsIndex, out.getByte(flagsIndex) | ROUTING_KEY_FLAG);
+            }
+            if (request.streaming()) {
+                out.setByte(flagsIndex, out.getByte(flagsIndex) | STREAMING_FLAG);
+            }
+        }
+        int payloadStart = out.writerIndex();
+        switch (frame.payload()) {
+            case InvocationRequest request -> serializer.writeRequest(request, out);
+            case InvocationResult result -> serializer.writeResult(result, out);
+            case Registration registration -> JsonBuffers.write(registration, out);
+            case Presence presence -> JsonBuffers.write(presence, out);
+            case Lookup lookup -> JsonBuffers.write(lookup, out);
+            case Invalidation invalidation -> JsonBuffers.write(invalidation, out);
+            case Credit credit -> out.writeLong(credit.amount());
+            case Batch _ -> throw new IllegalArgumentException("Batches do not nest");
+            case null -> {
+            }
+        }
+        int payloadLength = out.writerIndex() - payloadStart;
+        if (payloadLength > maxPayloadSize) {
+            throw new EncoderException(
+                    "Payload of " + payloadLength + " bytes exceeds the limit of " + maxPayloadSize);
+        }
+        if (!control
+                && Compression.shouldCompress(ctx.channel(), payloadLength)
+                && compress(ctx, out, payloadStart)) {
+            out.setByte(flagsIndex, out.getByte(flagsIndex) | Compression.FLAG);
+        }
+        int length = out.writerIndex() - start;
+        if (length > chunkSize && isMessage(frame.type())) {
+            // The first frame always holds the whole routing header
+            length = Math.max(chunkSize, payloadStart - start);
+            out.setByte(flagsIndex, out.getByte(flagsIndex) | MORE_FLAG);
+            writeChunks(ctx, frame, out, start + length);
+        }
+        out.setInt(lengthIndex, length);
+        if (metrics != null) {
+            metrics.frameOut(frame.type(), HEADER_SIZE + length);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Encoded {} ({}): {} bytes", frame.type(), serializer.name(), length);
+        }
+    }
+
+    // Writes the entries into BATCH frames of about the chunk size each
+    private void encodeBatch(ChannelHandlerContext ctx, Batch batch, ByteBuf out) {
+        int lengthIndex = -1;
+        for (Frame entry : batch.frames()) {
+            if (!isMessage(entry.type()) || entry.type() == Protocol.MessageType.STREAM) {
+                throw new IllegalArgumentException("Not a request or result: " + entry.type());
+            }
+            if (lengthIndex < 0) {
+                out.writeByte(Protocol.MessageType.BATCH.toByte());
+                out.writeByte(0);
+                out.writeLong(Frame.NO_ID);
+                lengthIndex = out.writerIndex();
+                out.writeInt(0);
+                if (metrics != null) {
+                    metrics.frameOut(Protocol.MessageType.BATCH, HEADER_SIZE);
+                }
+            }
+            int entryStart = out.writerIndex();
+            encodeFrame(ctx, entry, out);
+            if (hasMore(out.getByte(entryStart + 1))) {
+                // Chunked: the batch ends before it and the entry follows on its own
+                out.setInt(lengthIndex, entryStart - lengthIndex - 4);
+                lengthIndex = -1;
+            } else if (out.writerIndex() - lengthIndex - 4 >= chunkSize) {
+                out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+                lengthIndex = -1;
+            }
+        }
+        if (lengthIndex >= 0) {
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
         if (in.readableBytes() < HEADER_SIZE) {
@@ -50,9 +238,11 @@ public class FrameCodec extends ByteToMessageCodec<Frame> {
         in.markReaderIndex();
 
         byte typeByte = in.readByte();
+        byte flags = in.readByte();
+        long requestId = in.readLong();
         int length = in.readInt();
 
-        if (length < 0 || length > 10_000_000) { // 10MB sanity check
+        if (length < 0 || length > maxPayloadSize + MAX_ROUTING_HEADER) {
             log.error("Invalid payload length: {}", length);
             ctx.close();
             return;
@@ -63,45 +253,359 @@ public class FrameCodec extends ByteToMessageCodec<Frame> {
             return; // Need more data
         }
 
+        ByteBuf body = in.readSlice(length);
+        Protocol.MessageType type = null;
         try {
-            Protocol.MessageType type = Protocol.MessageType.fromByte(typeByte);
-            Frame frame = decodeFrame(type, in, length);
-            out.add(frame);
-            log.debug("Decoded {}: {} bytes", type, length);
+            type = Protocol.MessageType.fromByte(typeByte);
+            if (metrics != null) {
+                // The entries of a batch are counted as frames of their own
+                metrics.frameIn(type, type == Protocol.MessageType.BATCH ? HEADER_SIZE : HEADER_SIZE + length);
+            }
+            if (type == Protocol.MessageType.BATCH) {
+                decodeBatch(ctx, body, out);
+            } else if (routing && isRouted(type)) {
+                out.add(decodeRouted(type, flags, requestId, body));
+            } else if (type == Protocol.MessageType.CHUNK) {
+                continueMessage(ctx, flags, requestId, body, out);
+            } else if (hasMore(flags)) {
+                startMessage(ctx, type, flags, requestId, body, out);
+            } else {
+                if (isMessage(type) && (!requests.isEmpty() || !results.isEmpty())) {
+                    // e.g. the hub failing a result whose sender vanished halfway
+                    discard(partials(type).remove(requestId));
+                }
+                decodeMessage(ctx, type, flags, requestId, body, out);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Decoded {}: {} bytes", type, length);
+            }
+        } catch (TooLongFrameException e) {
+            // A compressed payload inflating beyond the limit
+            reject(ctx, type, requestId, e, out);
         } catch (Exception e) {
             log.error("Decode failed", e);
             ctx.fireExceptionCaught(e);
         }
     }
 
-    private Frame decodeFrame(Protocol.MessageType type, ByteBuf in, int length) {
-        if (length == 0) {
-            if (type == HEARTBEAT) {
-                return Frame.heartbeat();
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        requests.values().forEach(this::discard);
+        results.values().forEach(this::discard);
+        requests.clear();
+        results.clear();
+        super.handlerRemoved(ctx);
+    }
+
+    private RoutedFrame decodeRouted(Protocol.MessageType type, byte flags, long requestId, ByteBuf body) {
+        if (type == Protocol.MessageType.CHUNK) {
+            Protocol.MessageType chunkOf = Protocol.MessageType.fromByte(body.readByte());
+            return RoutedFrame.chunk(chunkOf, flags, requestId, body.retainedSlice());
+        }
+        String clientId = type == Protocol.MessageType.INVOKE ? readString(body) : null;
+        String routingKey = clientId != null && hasRoutingKey(flags) ? readString(body) : null;
+        return new RoutedFrame(type, flags, requestId, clientId, routingKey, body.retainedSlice());
+    }
+
+    private void decodeBatch(ChannelHandlerContext ctx, ByteBuf body, List<Object> out) {
+        List<Object> entries = new ArrayList<>();
+        try {
+            while (body.isReadable()) {
+                Protocol.MessageType type = Protocol.MessageType.fromByte(body.readByte());
+                byte flags = body.readByte();
+                long requestId = body.readLong();
+                ByteBuf entry = body.readSlice(body.readInt());
+                if (!isMessage(type) || type == Protocol.MessageType.STREAM || hasMore(flags)) {
+                    throw new IllegalArgumentException("Unexpected " + type + " in a batch");
+                }
+                if (metrics != null) {
+                    metrics.frameIn(type, HEADER_SIZE + entry.readableBytes());
+                }
+                if (routing) {
+                    entries.add(decodeRouted(type, flags, requestId, entry));
+                } else {
+                    decodeMessage(ctx, type, flags, requestId, entry, entries);
+                }
+            }
+        } catch (RuntimeException e) {
+            entries.forEach(ReferenceCountUtil::release);
+            throw e;
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (routing) {
+            List<RoutedFrame> frames = new ArrayList<>(entries.size());
+            entries.forEach(entry -> frames.add((RoutedFrame) entry));
+            out.add(new RoutedBatch(frames));
+        } else {
+            List<Frame> frames = new ArrayList<>(entries.size());
+            entries.forEach(entry -> frames.add((Frame) entry));
+            out.add(Frame.batch(frames));
+        }
+    }
+
+    // Splits the frame body from firstEnd on into CHUNK frames; the tail is copied
+    // out once since the CHUNK headers have to go in between
+    private void writeChunks(ChannelHandlerContext ctx, Frame frame, ByteBuf out, int firstEnd) {
+        int remaining = out.writerIndex() - firstEnd;
+        ByteBuf tail = ctx.alloc().buffer(remaining);
+        try {
+            tail.writeBytes(out, firstEnd, remaining);
+            out.writerIndex(firstEnd);
+            out.ensureWritable(remaining + (remaining / chunkSize + 1) * (HEADER_SIZE + 1));
+            while (tail.isReadable()) {
+                int length = Math.min(chunkSize - 1, tail.readableBytes());
+                out.writeByte(Protocol.MessageType.CHUNK.toByte());
+                out.writeByte(tail.readableBytes() > length ? MORE_FLAG : 0);
+                out.writeLong(frame.messageId());
+                out.writeInt(length + 1);
+                out.writeByte(frame.type().toByte());
+                out.writeBytes(tail, length);
+                if (metrics != null) {
+                    metrics.frameOut(Protocol.MessageType.CHUNK, HEADER_SIZE + length + 1);
+                }
+            }
+        } finally {
+            tail.release();
+        }
+    }
+
+    private void startMessage(ChannelHandlerContext ctx, Protocol.MessageType type, byte flags, long requestId,
+                              ByteBuf body, List<Object> out) {
+        Map<Long, Partial> partials = partials(type);
+        discard(partials.remove(requestId));
+        Partial partial = new Partial(type, (byte) (flags & ~MORE_FLAG), ctx.alloc().compositeBuffer(Integer.MAX_VALUE));
+        partials.put(requestId, partial);
+        append(ctx, partial, requestId, body, out);
+    }
+
+    private void continueMessage(ChannelHandlerContext ctx, byte flags, long requestId, ByteBuf body,
+                                 List<Object> out) {
+        Protocol.MessageType chunkOf = Protocol.MessageType.fromByte(body.readByte());
+        Map<Long, Partial> partials = partials(chunkOf);
+        Partial partial = partials.get(requestId);
+        if (partial == null) {
+            log.debug("Dropped chunk of {} {}", chunkOf, requestId);
+            return;
+        }
+        if (!hasMore(flags) && !body.isReadable()) {
+            log.debug("Sender aborted {} {}", chunkOf, requestId);
+            discard(partials.remove(requestId));
+            return;
+        }
+        if (!append(ctx, partial, requestId, body, out) || hasMore(flags)) {
+            return;
+        }
+        partials.remove(requestId);
+        reassembling -= partial.body().readableBytes();
+        try {
+            decodeMessage(ctx, partial.type(), partial.flags(), requestId, partial.body(), out);
+        } finally {
+            partial.body().release();
+        }
+    }
+
+    // Adds a fragment to a partial message; drops and fails the message if that breaks a limit
+    private boolean append(ChannelHandlerContext ctx, Partial partial, long requestId, ByteBuf fragment,
+                           List<Object> out) {
+        int size = partial.body().readableBytes() + fragment.readableBytes();
+        if (size > maxPayloadSize + MAX_ROUTING_HEADER
+                || reassembling + fragment.readableBytes() > reassemblyLimit) {
+            partials(partial.type()).remove(requestId);
+            discard(partial);
+            reject(ctx, partial.type(), requestId, new TooLongFrameException(size > maxPayloadSize
+                    ? "Payload exceeds the limit of " + maxPayloadSize + " bytes"
+                    : "Too many large messages in flight on this connection"), out);
+            return false;
+        }
+        partial.body().addComponent(true, fragment.retainedSlice());
+        reassembling += fragment.readableBytes();
+        return true;
+    }
+
+    private void reject(ChannelHandlerContext ctx, Protocol.MessageType type, long requestId, Exception cause,
+                        List<Object> out) {
+        log.warn("Dropped {} {}: {}", type, requestId, cause.getMessage());
+        InvocationResult failure = InvocationResult.failure(requestId, cause);
+        switch (type) {
+            // The sender is waiting for the result of this request; written from the
+            // tail of the pipeline so that it passes this codec's encoder
+            case INVOKE, FORWARD -> ctx.channel().writeAndFlush(Frame.result(failure));
+            // The caller is: fail its call, and stop the rest of a stream
+            case RESULT, STREAM -> {
+                if (type == Protocol.MessageType.STREAM) {
+                    ctx.channel().writeAndFlush(Frame.credit(requestId, Credit.cancel()));
+                }
+                out.add(Frame.result(failure));
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void discard(Partial partial) {
+        if (partial != null) {
+            reassembling -= partial.body().readableBytes();
+            partial.body().release();
+        }
+    }
+
+    private Map<Long, Partial> partials(Protocol.MessageType type) {
+        return switch (type) {
+            case INVOKE, FORWARD -> requests;
+            case RESULT, STREAM -> results;
+            default -> throw new IllegalArgumentException("Not a request or result: " + type);
+        };
+    }
+
+    // A request or result that cannot be read fails only its own call: the frame
+    // length still marks where the next frame starts, so the connection stays up
+    private void decodeMessage(ChannelHandlerContext ctx, Protocol.MessageType type, byte flags,
+                               long requestId, ByteBuf body, List<Object> out) {
+        Frame frame;
+        try {
+            frame = decodeFrame(ctx, type, flags, requestId, body);
+        } catch (RuntimeException e) {
+            if (!isMessage(type)) {
+                throw e;
+            }
+            log.debug("Could not read {} {}", type, requestId, e);
+            reject(ctx, type, requestId, e, out);
+            return;
+        }
+        out.add(frame);
+    }
+
+    private Frame decodeFrame(ChannelHandlerContext ctx, Protocol.MessageType type, byte flags,
+                              long requestId, ByteBuf body) {
+        if (!body.isReadable()) {
+            if (type == PING) {
+                return Frame.ping(requestId);
+            } else if (type == PONG) {
+                return Frame.pong(requestId);
             } else {
                 throw new IllegalArgumentException(
                         "Empty payload not allowed for " + type);
             }
         }
 
-        byte[] bytes = new byte[length];
-        in.readBytes(bytes);
-        JSONObject json = JSON.parseObject(bytes);
-
         return switch (type) {
             case INVOKE, FORWARD -> {
-                InvocationRequest req = json.to(InvocationRequest.class);
-                yield new Frame(req.requestId(), type, req);
-            }
-            case RESULT -> {
-                InvocationResult res = json.to(InvocationResult.class);
-                yield new Frame(res.requestId(), type, res);
+                String clientId = readString(body);
+                if (hasRoutingKey(flags)) {
+                    readString(body); // only the hub balances on it
+                }
+                InvocationRequest req = readPayload(ctx, flags, body,
+                        payload -> serializer(flags).readRequest(requestId, clientId, payload));
+                yield new Frame(requestId, type, isStreaming(flags) ? req.asStreaming() : req);
             }
-            case REGISTER -> {
-                Registration reg = json.to(Registration.class);
-                yield Frame.register(reg.clientId());
+            case RESULT, STREAM -> {
+                InvocationResult res = readPayload(ctx, flags, body,
+                        payload -> serializer(flags).readResult(requestId, payload));
+                yield new Frame(requestId, type, res);
             }
-            case HEARTBEAT -> Frame.heartbeat();
+            case REGISTER -> Frame.register(JsonBuffers.read(body, Registration.class));
+            case PRESENCE -> Frame.presence(JsonBuffers.read(body, Presence.class));
+            case LOOKUP -> Frame.lookup(requestId, JsonBuffers.read(body, Lookup.class));
+            case INVALIDATE -> Frame.invalidate(JsonBuffers.read(body, Invalidation.class));
+            case CREDIT -> Frame.credit(requestId, new Credit(body.readLong()));
+            case PING -> Frame.ping(requestId);
+            case PONG -> Frame.pong(requestId);
+            case CHUNK -> throw new IllegalStateException("Chunks are reassembled before decoding");
+            case BATCH -> throw new IllegalStateException("Batches are split before decoding");
+        };
+    }
+
+    // Frames the hub passes on without deserializing their payload
+    private static boolean isRouted(Protocol.MessageType type) {
+        return switch (type) {
+            case INVOKE, RESULT, STREAM, CREDIT, CHUNK -> true;
+            default -> false;
         };
     }
+
+    // Requests and results, the frames that may be chunked
+    private static boolean isMessage(Protocol.MessageType type) {
+        return switch (type) {
+            case INVOKE, FORWARD, RESULT, STREAM -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isControl(Protocol.Payload payload) {
+        return payload instanceof Registration || payload instanceof Presence || payload instanceof Lookup
+                || payload instanceof Invalidation;
+    }
+
+    // Replaces the payload from payloadStart on with its compressed form, unless that is no smaller
+    private static boolean compress(ChannelHandlerContext ctx, ByteBuf out, int payloadStart) {
+        int length = out.writerIndex() - payloadStart;
+        ByteBuf compressed = ctx.alloc().buffer(length / 2 + 64);
+        try {
+            Compression.compress(out.slice(payloadStart, length), compressed);
+            if (compressed.readableBytes() >= length) {
+                return false;
+            }
+            out.writerIndex(payloadStart).writeBytes(compressed);
+            return true;
+        } finally {
+            compressed.release();
+        }
+    }
+
+    private <T> T readPayload(ChannelHandlerContext ctx, byte flags, ByteBuf body, Function<ByteBuf, T> reader) {
+        if (!Compression.isCompressed(flags)) {
+            return reader.apply(body);
+        }
+        int inflated = body.getInt(body.readerIndex());
+        if (inflated > maxPayloadSize) {
+            throw new TooLongFrameException("Payload exceeds the limit of " + maxPayloadSize + " bytes");
+        }
+        ByteBuf payload = Compression.decompress(ctx.alloc(), body, maxPayloadSize);
+        try {
+            return reader.apply(payload);
+        } finally {
+            payload.release();
+        }
+    }
+
+    private static Serializer serializer(byte flags) {
+        return Serializers.byId(flags & SERIALIZER_MASK);
+    }
+
+    static boolean isStreaming(byte flags) {
+        return (flags & STREAMING_FLAG) != 0;
+    }
+
+    static boolean hasMore(byte flags) {
+        return (flags & MORE_FLAG) != 0;
+    }
+
+    static boolean hasRoutingKey(byte flags) {
+        return (flags & ROUTING_KEY_FLAG) != 0;
+    }
+
+    static void writeRoutingHeader(ByteBuf out, String clientId, String routingKey) {
+        if (clientId != null) {
+            writeString(out, clientId);
+            if (routingKey != null) {
+                writeString(out, routingKey);
+            }
+        }
+    }
+
+    private static void writeString(ByteBuf out, String s) {
+        int lengthIndex = out.writerIndex();
+        out.writeShort(0);
+        int length = ByteBufUtil.writeUtf8(out, s);
+        out.setShort(lengthIndex, length);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = in.readUnsignedShort();
+        String s = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return s;
+    }
 }
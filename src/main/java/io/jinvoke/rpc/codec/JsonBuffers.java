@@ -0,0 +1,49 @@
+package io.jinvoke.rpc.codec;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONReader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * fastjson2 straight on Netty buffers, without an intermediate byte array per
+ * payload: values are written from fastjson2's thread-cached buffer into the
+ * pooled outbound buffer, and read from the inbound buffer's backing array or
+ * memory into the target type.
+ */
+final class JsonBuffers {
+
+    private JsonBuffers() {
+    }
+
+    static void write(Object value, ByteBuf out) {
+        JSON.writeTo(new ByteBufOutputStream(out), value);
+    }
+
+    /**
+     * Reads all readable bytes of {@code in} as one {@code type}.
+     */
+    static <T> T read(ByteBuf in, Class<T> type) {
+        int length = in.readableBytes();
+        T value;
+        try (JSONReader reader = reader(in, length)) {
+            value = reader.read(type);
+        }
+        in.skipBytes(length);
+        return value;
+    }
+
+    private static JSONReader reader(ByteBuf in, int length) {
+        if (in.hasArray()) {
+            return JSONReader.of(in.array(), in.arrayOffset() + in.readerIndex(), length, StandardCharsets.UTF_8);
+        }
+        if (in.nioBufferCount() == 1) {
+            return JSONReader.of(in.nioBuffer(in.readerIndex(), length), StandardCharsets.UTF_8);
+        }
+        // Composite of several chunks: streamed rather than merged
+        return JSONReader.of(new ByteBufInputStream(in.duplicate(), length), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,65 @@
+package io.jinvoke.rpc.codec;
+
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.jinvoke.rpc.protocol.InvocationResult;
+import io.jinvoke.rpc.protocol.RemoteInvocationException;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * FastJSON text encoding. Always available and used until a connection
+ * negotiates something else.
+ */
+public final class JsonSerializer implements Serializer {
+    public static final byte ID = 0;
+    public static final String NAME = "json";
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void writeRequest(InvocationRequest request, ByteBuf out) {
+        JsonBuffers.write(new RequestBody(request.targetClass(), request.targetMethod(),
+                request.params(), request.paramTypes(), request.returnType()), out);
+    }
+
+    @Override
+    public InvocationRequest readRequest(long requestId, String clientId, ByteBuf in) {
+        RequestBody body = JsonBuffers.read(in, RequestBody.class);
+        return new InvocationRequest(requestId, clientId, body.targetClass(), body.targetMethod(),
+                body.params(), body.paramTypes(), body.returnType());
+    }
+
+    @Override
+    public void writeResult(InvocationResult result, ByteBuf out) {
+        JsonBuffers.write(switch (result) {
+            case InvocationResult.Success success -> new ResultBody(true, success.value(), null, null);
+            case InvocationResult.Failure failure ->
+                    new ResultBody(false, null, failure.errorType(), failure.errorMessage());
+        }, out);
+    }
+
+    @Override
+    public InvocationResult readResult(long requestId, ByteBuf in) {
+        ResultBody body = JsonBuffers.read(in, ResultBody.class);
+
+        if (body.success()) {
+            return InvocationResult.success(requestId, body.value());
+        }
+        return InvocationResult.failure(requestId, RemoteInvocationException.of(
+                body.errorType(), body.errorMessage()));
+    }
+
+    private record RequestBody(String targetClass, String targetMethod,
+                               Object[] params, String[] paramTypes, String returnType) {
+    }
+
+    private record ResultBody(boolean success, Object value, String errorType, String errorMessage) {
+    }
+}
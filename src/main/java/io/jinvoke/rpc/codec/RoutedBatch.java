@@ -0,0 +1,52 @@
+package io.jinvoke.rpc.codec;
+
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+
+import java.util.List;
+
+/**
+ * BATCH frame routed by the hub: the {@link RoutedFrame}s it carries, each still
+ * holding its payload as an opaque slice. Releasing the batch releases them all.
+ */
+public final class RoutedBatch extends AbstractReferenceCounted {
+    private final List<RoutedFrame> frames;
+
+    /**
+     * Takes over the references held by {@code frames}.
+     */
+    public RoutedBatch(List<RoutedFrame> frames) {
+        this.frames = List.copyOf(frames);
+    }
+
+    public List<RoutedFrame> frames() {
+        return frames;
+    }
+
+    /**
+     * @return the payload bytes of all frames
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (RoutedFrame frame : frames) {
+            bytes += frame.content().readableBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void deallocate() {
+        frames.forEach(ReferenceCounted::release);
+    }
+
+    @Override
+    public RoutedBatch touch(Object hint) {
+        frames.forEach(frame -> frame.touch(hint));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "RoutedBatch[frames=" + frames.size() + ", payload=" + bytes() + " bytes]";
+    }
+}
@@ -0,0 +1,126 @@
+package io.jinvoke.rpc.codec;
+
+import io.jinvoke.rpc.protocol.Protocol;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Frame routed by the hub (INVOKE/FORWARD/RESULT/STREAM/CREDIT/CHUNK): the routing
+ * header is decoded, the serialized payload is kept as an opaque slice of the
+ * inbound buffer so it can be forwarded without being parsed or re-encoded.
+ */
+public final class RoutedFrame extends DefaultByteBufHolder {
+    private final Protocol.MessageType type;
+    private final byte flags;
+    private final long requestId;
+    private final String clientId;
+    private final String routingKey;
+    private final Protocol.MessageType chunkOf;
+
+    public RoutedFrame(Protocol.MessageType type, byte flags, long requestId, String clientId, String routingKey,
+                       ByteBuf payload) {
+        this(type, flags, requestId, clientId, routingKey, null, payload);
+    }
+
+    private RoutedFrame(Protocol.MessageType type, byte flags, long requestId, String clientId, String routingKey,
+                        Protocol.MessageType chunkOf, ByteBuf payload) {
+        super(payload);
+        this.type = type;
+        this.flags = flags;
+        this.requestId = requestId;
+        this.clientId = clientId;
+        this.routingKey = routingKey;
+        this.chunkOf = chunkOf;
+    }
+
+    /**
+     * A CHUNK continuing the {@code chunkOf} message with {@code requestId}.
+     */
+    public static RoutedFrame chunk(Protocol.MessageType chunkOf, byte flags, long requestId, ByteBuf data) {
+        return new RoutedFrame(Protocol.MessageType.CHUNK, flags, requestId, null, null, chunkOf, data);
+    }
+
+    /**
+     * The empty last CHUNK that tells the receiver to drop a partial message.
+     */
+    public static RoutedFrame abort(Protocol.MessageType chunkOf, long requestId) {
+        return chunk(chunkOf, (byte) 0, requestId, Unpooled.EMPTY_BUFFER);
+    }
+
+    public Protocol.MessageType type() {
+        return type;
+    }
+
+    public byte flags() {
+        return flags;
+    }
+
+    public long requestId() {
+        return requestId;
+    }
+
+    /**
+     * Target client of an INVOKE/FORWARD; {@code null} for the other types.
+     */
+    public String clientId() {
+        return clientId;
+    }
+
+    /**
+     * Whether an INVOKE asks for its result as a stream.
+     */
+    public boolean isStreaming() {
+        return FrameCodec.isStreaming(flags);
+    }
+
+    /**
+     * Whether CHUNK frames follow with the rest of the message.
+     */
+    public boolean hasMore() {
+        return FrameCodec.hasMore(flags);
+    }
+
+    /**
+     * Type of the message a CHUNK continues; {@code null} for the other types.
+     */
+    public Protocol.MessageType chunkOf() {
+        return chunkOf;
+    }
+
+    /**
+     * Key the caller pins the call to a group member with; {@code null} if none.
+     */
+    public String routingKey() {
+        return routingKey;
+    }
+
+    /**
+     * Same frame under a different message type and request id, sharing a
+     * retained payload. The hub renumbers requests per target connection.
+     */
+    public RoutedFrame retainedAs(Protocol.MessageType type, long requestId) {
+        return new RoutedFrame(type, flags, requestId, clientId, routingKey, chunkOf, content().retainedDuplicate());
+    }
+
+    /**
+     * Same CHUNK continuing a message of type {@code chunkOf} with {@code requestId},
+     * sharing a retained payload.
+     */
+    public RoutedFrame retainedChunk(Protocol.MessageType chunkOf, long requestId) {
+        return chunk(chunkOf, flags, requestId, content().retainedDuplicate());
+    }
+
+    @Override
+    public RoutedFrame replace(ByteBuf content) {
+        return new RoutedFrame(type, flags, requestId, clientId, routingKey, chunkOf, content);
+    }
+
+    @Override
+    public String toString() {
+        return "RoutedFrame[type=" + type + ", requestId=" + requestId + ", clientId=" + clientId
+                + (routingKey != null ? ", routingKey=" + routingKey : "")
+                + (chunkOf != null ? ", chunkOf=" + chunkOf : "")
+                + ", payload=" + content().readableBytes() + " bytes]";
+    }
+}
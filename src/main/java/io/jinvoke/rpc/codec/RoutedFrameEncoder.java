@@ -0,0 +1,110 @@
+package io.jinvoke.rpc.codec;
+
+import io.jinvoke.rpc.metrics.RpcMetrics;
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.Protocol;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * Writes a {@link RoutedFrame} as a freshly built header followed by the original
+ * payload slice, so the payload bytes are never copied on the hub, and a
+ * {@link RoutedBatch} as a BATCH header followed by its frames. A compressed
+ * payload is only inflated when the target did not negotiate compression, and the
+ * routing key is only passed on to peer hubs. The first frame of a chunked message
+ * cannot be inflated on its own and passes as it is; the receiving codec inflates
+ * the reassembled payload.
+ * Must sit after {@link FrameCodec} in the pipeline.
+ */
+@ChannelHandler.Sharable
+public class RoutedFrameEncoder extends MessageToMessageEncoder<Object> {
+    private final int maxPayloadSize;
+    private final RpcMetrics metrics;
+
+    public RoutedFrameEncoder() {
+        this(FrameCodec.DEFAULT_MAX_PAYLOAD_SIZE, null);
+    }
+
+    /**
+     * @param maxPayloadSize largest payload a compressed one is inflated to
+     * @param metrics        counts the frames and bytes written, unless {@code null}
+     */
+    public RoutedFrameEncoder(int maxPayloadSize, RpcMetrics metrics) {
+        this.maxPayloadSize = maxPayloadSize;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof RoutedFrame || msg instanceof RoutedBatch;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) {
+        switch (msg) {
+            case RoutedFrame frame -> encodeFrame(ctx, frame, out);
+            case RoutedBatch batch -> {
+                ByteBuf header = ctx.alloc().ioBuffer(FrameCodec.HEADER_SIZE);
+                header.writeByte(Protocol.MessageType.BATCH.toByte());
+                header.writeByte(0);
+                header.writeLong(Frame.NO_ID);
+                header.writeInt(0);
+                out.add(header);
+                long length = 0;
+                for (RoutedFrame frame : batch.frames()) {
+                    length += encodeFrame(ctx, frame, out);
+                }
+                header.setInt(FrameCodec.HEADER_SIZE - 4, (int) length);
+                if (metrics != null) {
+                    metrics.frameOut(Protocol.MessageType.BATCH, FrameCodec.HEADER_SIZE);
+                }
+            }
+            default -> throw new IllegalArgumentException("Not a routed frame: " + msg);
+        }
+    }
+
+    // Adds the header and payload of one frame to out; returns their size
+    private int encodeFrame(ChannelHandlerContext ctx, RoutedFrame frame, List<Object> out) {
+        ByteBuf payload = frame.content();
+        byte flags = frame.flags();
+        if (Compression.isCompressed(flags) && !frame.hasMore() && !Compression.isEnabled(ctx.channel())) {
+            payload = Compression.decompress(ctx.alloc(), payload.duplicate(), maxPayloadSize);
+            flags &= (byte) ~Compression.FLAG;
+        } else {
+            payload.retain();
+        }
+        String clientId = frame.type() == Protocol.MessageType.INVOKE || frame.type() == Protocol.MessageType.FORWARD
+                ? frame.clientId()
+                : null;
+        // A peer hub balances its group on the key as well; clients have no use for it
+        String routingKey = frame.type() == Protocol.MessageType.INVOKE ? frame.routingKey() : null;
+        if (routingKey == null) {
+            flags &= (byte) ~FrameCodec.ROUTING_KEY_FLAG;
+        }
+
+        ByteBuf header = ctx.alloc().ioBuffer(FrameCodec.HEADER_SIZE + 32);
+        header.writeByte(frame.type().toByte());
+        header.writeByte(flags);
+        header.writeLong(frame.requestId());
+        int lengthIndex = header.writerIndex();
+        header.writeInt(0);
+        if (frame.type() == Protocol.MessageType.CHUNK) {
+            header.writeByte(frame.chunkOf().toByte());
+        } else {
+            FrameCodec.writeRoutingHeader(header, clientId, routingKey);
+        }
+        header.setInt(lengthIndex, header.writerIndex() - FrameCodec.HEADER_SIZE + payload.readableBytes());
+
+        int size = header.readableBytes() + payload.readableBytes();
+        if (metrics != null) {
+            metrics.frameOut(frame.type(), size);
+        }
+        out.add(header);
+        out.add(payload);
+        return size;
+    }
+}
@@ -0,0 +1,47 @@
+package io.jinvoke.rpc.codec;
+
+import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.jinvoke.rpc.protocol.InvocationResult;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Payload serialization SPI for INVOKE/FORWARD and RESULT frames.
+ * <p>
+ * The serializer a peer writes with is negotiated per connection during REGISTER,
+ * and its {@link #id()} travels in every frame header, so the receiving side can
+ * always pick the matching implementation. Additional implementations are
+ * discovered through {@link java.util.ServiceLoader}.
+ */
+public interface Serializer {
+
+    /**
+     * Wire id in the range 0-15. Ids 0 and 1 are reserved for the built-ins.
+     */
+    byte id();
+
+    /**
+     * Name used during REGISTER negotiation.
+     */
+    String name();
+
+    /**
+     * Writes the request body. {@code requestId} travels in the frame header and
+     * {@code clientId} in the routing header; neither is part of the payload.
+     */
+    void writeRequest(InvocationRequest request, ByteBuf out);
+
+    /**
+     * Reads a request body from {@code in}, consuming all of its readable bytes.
+     */
+    InvocationRequest readRequest(long requestId, String clientId, ByteBuf in);
+
+    /**
+     * Writes the result body; {@code requestId} travels in the frame header.
+     */
+    void writeResult(InvocationResult result, ByteBuf out);
+
+    /**
+     * Reads a result body from {@code in}, consuming all of its readable bytes.
+     */
+    InvocationResult readResult(long requestId, ByteBuf in);
+}
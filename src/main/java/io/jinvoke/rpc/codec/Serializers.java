@@ -0,0 +1,79 @@
+package io.jinvoke.rpc.codec;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of available {@link Serializer}s, keyed by wire id and by name.
+ * The serializer a channel writes with is stored on the channel itself.
+ */
+public final class Serializers {
+    private static final Logger log = LoggerFactory.getLogger(Serializers.class);
+
+    public static final AttributeKey<Serializer> CHANNEL_SERIALIZER = AttributeKey.valueOf("serializer");
+
+    private static final Serializer JSON = new JsonSerializer();
+    private static final Serializer BINARY = new BinarySerializer();
+
+    private static final Serializer[] BY_ID = new Serializer[16];
+    private static final Map<String, Serializer> BY_NAME = new ConcurrentHashMap<>();
+
+    static {
+        register(JSON);
+        register(BINARY);
+        ServiceLoader.load(Serializer.class).forEach(Serializers::register);
+    }
+
+    private Serializers() {
+    }
+
+    public static synchronized void register(Serializer serializer) {
+        int id = serializer.id();
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Serializer id out of range: " + id);
+        }
+        if (BY_ID[id] != null && BY_ID[id] != serializer) {
+            throw new IllegalStateException("Serializer id " + id + " already taken by " + BY_ID[id].name());
+        }
+        BY_ID[id] = serializer;
+        BY_NAME.put(serializer.name(), serializer);
+        log.debug("Serializer registered: {} ({})", serializer.name(), id);
+    }
+
+    public static Serializer json() {
+        return JSON;
+    }
+
+    public static Serializer byId(int id) {
+        Serializer serializer = id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+        if (serializer == null) {
+            throw new IllegalArgumentException("Unknown serializer id: " + id);
+        }
+        return serializer;
+    }
+
+    /**
+     * Resolves a serializer by name, falling back to JSON for unknown or missing names.
+     */
+    public static Serializer byName(String name) {
+        return name == null ? JSON : BY_NAME.getOrDefault(name, JSON);
+    }
+
+    /**
+     * Serializer used to write to {@code channel}; JSON until REGISTER completes.
+     */
+    public static Serializer of(Channel channel) {
+        Serializer serializer = channel.attr(CHANNEL_SERIALIZER).get();
+        return serializer != null ? serializer : JSON;
+    }
+
+    public static void bind(Channel channel, Serializer serializer) {
+        channel.attr(CHANNEL_SERIALIZER).set(serializer);
+    }
+}
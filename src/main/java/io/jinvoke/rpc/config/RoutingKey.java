@@ -0,0 +1,15 @@
+package io.jinvoke.rpc.config;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks the parameter whose value routes a call to a service group: calls with
+ * equal keys reach the same instance for as long as it stays registered. The
+ * key is the argument's {@code toString()}; a {@code null} argument leaves the
+ * choice to the server's balancing.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface RoutingKey {
+}
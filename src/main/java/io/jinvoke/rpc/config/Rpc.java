@@ -6,4 +6,29 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Rpc {
+
+    /**
+     * Where the method runs when invoked by a remote caller.
+     * {@link Execution#DEFAULT} follows {@code jinvoke.rpc.client.execution.mode}.
+     */
+    Execution execution() default Execution.DEFAULT;
+
+    enum Execution {
+        /**
+         * Client-wide default.
+         */
+        DEFAULT,
+        /**
+         * On the Netty event loop; only for trivial, non-blocking methods.
+         */
+        INLINE,
+        /**
+         * On a new virtual thread per invocation.
+         */
+        VIRTUAL,
+        /**
+         * On the client's bounded platform thread pool.
+         */
+        POOL
+    }
 }
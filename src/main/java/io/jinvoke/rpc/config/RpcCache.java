@@ -0,0 +1,40 @@
+package io.jinvoke.rpc.config;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of calls made through a proxy on the caller, keyed on the
+ * target, the method and the arguments. On a client interface it applies to
+ * all of its methods, on a method it takes precedence over the interface's.
+ * <p>
+ * Only methods returning a value, directly or as a {@code CompletableFuture} or
+ * {@code CompletionStage}, are cached, and only for successful calls without
+ * binary arguments. Cached values are shared by every caller that hits them and
+ * must not be modified. Targets drop stale results with
+ * {@code RpcClient.invalidate}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface RpcCache {
+
+    /**
+     * How long a result is served after it arrived; {@code 0} keeps it until it
+     * is evicted or invalidated.
+     */
+    long ttl() default 60;
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * Results kept per method; beyond that, those least likely to be asked for
+     * again are evicted.
+     */
+    int maxSize() default 1024;
+
+    /**
+     * {@code false} exempts a method of an interface cached as a whole.
+     */
+    boolean enabled() default true;
+}
@@ -0,0 +1,25 @@
+package io.jinvoke.rpc.config;
+
+import java.lang.annotation.*;
+
+/**
+ * Lets identical calls made through a proxy while one of them is in flight share
+ * it: the first call with given target and arguments is sent, the others wait
+ * for its result instead of sending their own. On a client interface it applies
+ * to all of its methods, on a method it takes precedence over the interface's.
+ * <p>
+ * Only methods returning a value, directly or as a {@code CompletableFuture} or
+ * {@code CompletionStage}, and without binary arguments are coalesced. Callers
+ * sharing a call share its result object, which must not be modified.
+ * Combined with {@link RpcCache}, a burst of misses for one entry is sent once.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface RpcCoalesce {
+
+    /**
+     * {@code false} exempts a method of an interface coalesced as a whole.
+     */
+    boolean enabled() default true;
+}
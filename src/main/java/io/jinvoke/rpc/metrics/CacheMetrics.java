@@ -0,0 +1,59 @@
+package io.jinvoke.rpc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Hits, misses and evictions of the caller-side cache of one method's results,
+ * named by the method id. Entries dropped because they expired count as
+ * evictions; those a target invalidated do not.
+ * <p>
+ * Look an instance up once and keep it; recording into it never allocates.
+ */
+public final class CacheMetrics {
+    private final String name;
+    private final IntSupplier size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    CacheMetrics(String name, IntSupplier size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public void eviction() {
+        evictions.increment();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return entries cached right now
+     */
+    public int size() {
+        return size.getAsInt();
+    }
+}
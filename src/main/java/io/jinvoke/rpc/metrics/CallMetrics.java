@@ -0,0 +1,79 @@
+package io.jinvoke.rpc.metrics;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, failures and timeouts of the calls to one method as seen from one
+ * {@link RpcMetrics.Side}: the caller waits for the result, the target runs the
+ * method until it returns or its future completes, and the hub waits for the
+ * target to answer. The hub never reads payloads, so it keeps these per target
+ * name rather than per method.
+ * <p>
+ * Failed and timed-out calls are part of the latency distribution. Look an
+ * instance up once and keep it; recording into it never allocates.
+ */
+public final class CallMetrics {
+    private final RpcMetrics.Side side;
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    CallMetrics(RpcMetrics.Side side, String name) {
+        this.side = side;
+        this.name = name;
+    }
+
+    public RpcMetrics.Side side() {
+        return side;
+    }
+
+    /**
+     * The method id on callers and targets, the target client or group on the hub.
+     */
+    public String name() {
+        return name;
+    }
+
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * Records a call started at {@code startNanos}, as given by
+     * {@link System#nanoTime()}, that ended now; {@code error} is {@code null}
+     * unless it failed.
+     */
+    public void record(long startNanos, Throwable error) {
+        latency.record(System.nanoTime() - startNanos);
+        if (error != null) {
+            failed(error);
+        }
+    }
+
+    /**
+     * Counts a call that failed before it started, e.g. one refused for overload,
+     * without adding to the latency distribution.
+     */
+    public void failed(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            timeouts.increment();
+        } else {
+            failures.increment();
+        }
+    }
+
+    /**
+     * @return calls that failed, timeouts excluded
+     */
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+}
@@ -0,0 +1,101 @@
+package io.jinvoke.rpc.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of latencies in nanoseconds over fixed log-linear buckets, eight
+ * per power of two, so a percentile is reported within 12.5% of the true value.
+ * <p>
+ * Recording is lock-free and never allocates. Reads walk the buckets while
+ * recording goes on, which is consistent enough for monitoring but not an atomic
+ * snapshot. The distribution covers everything recorded since it was created.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return total.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    public double meanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * @param quantile between {@code 0} and {@code 1}
+     * @return the upper bound of the bucket holding {@code quantile}, at most the
+     * maximum recorded; {@code 0} while nothing was recorded
+     */
+    public long percentileNanos(double quantile) {
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            recorded += buckets.get(i);
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * recorded));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above, the top SUB_BUCKET_BITS
+    // bits after the leading one pick one of SUB_BUCKETS per power of two
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int mantissa = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1 + SUB_BUCKET_BITS;
+        int mantissa = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long bound = (long) (SUB_BUCKETS + mantissa + 1) << shift;
+        // The last bucket reaches past Long.MAX_VALUE
+        return bound <= 0 ? Long.MAX_VALUE : bound - 1;
+    }
+}
@@ -0,0 +1,92 @@
+package io.jinvoke.rpc.metrics;
+
+import io.jinvoke.rpc.protocol.Protocol;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * The {@link RpcMetricsMXBean} registered for an {@link RpcMetrics}; everything
+ * is computed when read.
+ */
+final class MetricsView implements RpcMetricsMXBean {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final RpcMetrics metrics;
+
+    MetricsView(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Map<String, Long> getFramesIn() {
+        return byType(metrics::framesIn);
+    }
+
+    @Override
+    public Map<String, Long> getFramesOut() {
+        return byType(metrics::framesOut);
+    }
+
+    @Override
+    public Map<String, Long> getBytesIn() {
+        return byType(metrics::bytesIn);
+    }
+
+    @Override
+    public Map<String, Long> getBytesOut() {
+        return byType(metrics::bytesOut);
+    }
+
+    @Override
+    public Map<String, Integer> getInFlight() {
+        return metrics.inFlight();
+    }
+
+    @Override
+    public Map<String, Double> getRoundTripMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        metrics.roundTrips().forEach((clientId, nanos) -> millis.put(clientId, nanos / NANOS_PER_MILLI));
+        return millis;
+    }
+
+    @Override
+    public List<CallStats> getCalls() {
+        List<CallStats> stats = new ArrayList<>();
+        for (RpcMetrics.Side side : RpcMetrics.Side.values()) {
+            for (CallMetrics calls : metrics.calls(side)) {
+                LatencyHistogram latency = calls.latency();
+                stats.add(new CallStats(side.name(), calls.name(), latency.count(), calls.failures(), calls.timeouts(),
+                        latency.meanNanos() / NANOS_PER_MILLI,
+                        latency.percentileNanos(0.5) / NANOS_PER_MILLI,
+                        latency.percentileNanos(0.9) / NANOS_PER_MILLI,
+                        latency.percentileNanos(0.99) / NANOS_PER_MILLI,
+                        latency.maxNanos() / NANOS_PER_MILLI));
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public List<CacheStats> getCaches() {
+        List<CacheStats> stats = new ArrayList<>();
+        for (CacheMetrics cache : metrics.caches()) {
+            long hits = cache.hits();
+            long misses = cache.misses();
+            stats.add(new CacheStats(cache.name(), cache.size(), hits, misses, cache.evictions(),
+                    (double) hits / (hits + misses)));
+        }
+        return stats;
+    }
+
+    private static Map<String, Long> byType(ToLongFunction<Protocol.MessageType> counter) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Protocol.MessageType type : Protocol.MessageType.values()) {
+            counts.put(type.name(), counter.applyAsLong(type));
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,182 @@
+package io.jinvoke.rpc.metrics;
+
+import io.jinvoke.rpc.protocol.Protocol;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.BeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link RpcMetrics} to a Micrometer {@link MeterRegistry}:
+ * <ul>
+ *     <li>{@code jinvoke.frames} and {@code jinvoke.bytes}: counters tagged with
+ *     {@code direction} ({@code in}/{@code out}) and message {@code type}</li>
+ *     <li>{@code jinvoke.calls}: a timer per {@code side} and {@code name} (the
+ *     method id, or the target on the hub), with {@code jinvoke.calls.latency}
+ *     per {@code quantile}, {@code jinvoke.calls.max}, and the
+ *     {@code jinvoke.calls.failures} and {@code jinvoke.calls.timeouts} counters</li>
+ *     <li>{@code jinvoke.in.flight} and {@code jinvoke.round.trip}: gauges per
+ *     {@code client}, the latter {@code NaN} until the client's connection was
+ *     pinged</li>
+ *     <li>{@code jinvoke.cache.gets}: counters per {@code cache} (the method id)
+ *     and {@code result} ({@code hit}/{@code miss}), with the
+ *     {@code jinvoke.cache.evictions} counter and {@code jinvoke.cache.size} gauge</li>
+ * </ul>
+ * Meters read the recorded values when they are published, so recording does not
+ * go through Micrometer. Calls and clients that come and go get their meters
+ * added and removed along. Micrometer is an optional dependency; this class is
+ * only loaded when it is present.
+ */
+public final class MicrometerMetrics implements MeterBinder {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final RpcMetrics metrics;
+    private final Tags tags;
+
+    /**
+     * @param tags added to every meter, e.g. the client or hub id
+     */
+    public MicrometerMetrics(RpcMetrics metrics, Iterable<Tag> tags) {
+        this.metrics = metrics;
+        this.tags = Tags.of(tags);
+    }
+
+    /**
+     * Binds {@code metrics} to every {@link MeterRegistry} bean of {@code beanFactory}.
+     */
+    public static void bindTo(BeanFactory beanFactory, RpcMetrics metrics, String tagKey, String tagValue) {
+        beanFactory.getBeanProvider(MeterRegistry.class).orderedStream()
+                .forEach(registry -> new MicrometerMetrics(metrics, Tags.of(tagKey, tagValue)).bindTo(registry));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Protocol.MessageType type : Protocol.MessageType.values()) {
+            Tags in = tags.and("direction", "in", "type", type.name());
+            Tags out = tags.and("direction", "out", "type", type.name());
+            FunctionCounter.builder("jinvoke.frames", metrics, m -> m.framesIn(type)).tags(in).register(registry);
+            FunctionCounter.builder("jinvoke.frames", metrics, m -> m.framesOut(type)).tags(out).register(registry);
+            FunctionCounter.builder("jinvoke.bytes", metrics, m -> m.bytesIn(type))
+                    .tags(in).baseUnit(BaseUnits.BYTES).register(registry);
+            FunctionCounter.builder("jinvoke.bytes", metrics, m -> m.bytesOut(type))
+                    .tags(out).baseUnit(BaseUnits.BYTES).register(registry);
+        }
+
+        Binding binding = new Binding(registry);
+        // Listening first, so nothing added meanwhile is missed; meters registered twice are the same meter
+        metrics.addListener(binding);
+        for (RpcMetrics.Side side : RpcMetrics.Side.values()) {
+            metrics.calls(side).forEach(binding::callsAdded);
+        }
+        metrics.inFlight().keySet().forEach(binding::clientAdded);
+        metrics.caches().forEach(binding::cacheAdded);
+    }
+
+    // Meters of the entries that come and go, for one registry
+    private final class Binding implements RpcMetrics.Listener {
+        private final MeterRegistry registry;
+        private final Map<CallMetrics, List<Meter>> callMeters = new ConcurrentHashMap<>();
+        private final Map<String, List<Meter>> clientMeters = new ConcurrentHashMap<>();
+        private final Set<CacheMetrics> caches = ConcurrentHashMap.newKeySet();
+
+        Binding(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void callsAdded(CallMetrics calls) {
+            callMeters.computeIfAbsent(calls, this::register);
+        }
+
+        @Override
+        public void callsRemoved(CallMetrics calls) {
+            List<Meter> meters = callMeters.remove(calls);
+            if (meters != null) {
+                meters.forEach(registry::remove);
+            }
+        }
+
+        @Override
+        public void clientAdded(String clientId) {
+            clientMeters.computeIfAbsent(clientId, id -> List.of(
+                    Gauge.builder("jinvoke.in.flight", metrics, m -> m.inFlight(id))
+                            .tags(tags.and("client", id))
+                            .register(registry),
+                    TimeGauge.builder("jinvoke.round.trip", metrics, TimeUnit.NANOSECONDS, m -> roundTrip(m, id))
+                            .tags(tags.and("client", id))
+                            .register(registry)));
+        }
+
+        @Override
+        public void clientRemoved(String clientId) {
+            List<Meter> meters = clientMeters.remove(clientId);
+            if (meters != null) {
+                meters.forEach(registry::remove);
+            }
+        }
+
+        @Override
+        public void cacheAdded(CacheMetrics cache) {
+            if (!caches.add(cache)) {
+                return;
+            }
+            Tags cacheTags = tags.and("cache", cache.name());
+            FunctionCounter.builder("jinvoke.cache.gets", cache, CacheMetrics::hits)
+                    .tags(cacheTags.and("result", "hit"))
+                    .register(registry);
+            FunctionCounter.builder("jinvoke.cache.gets", cache, CacheMetrics::misses)
+                    .tags(cacheTags.and("result", "miss"))
+                    .register(registry);
+            FunctionCounter.builder("jinvoke.cache.evictions", cache, CacheMetrics::evictions)
+                    .tags(cacheTags)
+                    .register(registry);
+            Gauge.builder("jinvoke.cache.size", cache, CacheMetrics::size)
+                    .tags(cacheTags)
+                    .register(registry);
+        }
+
+        private List<Meter> register(CallMetrics calls) {
+            Tags callTags = tags.and("side", calls.side().name().toLowerCase(), "name", calls.name());
+            List<Meter> meters = new ArrayList<>();
+            meters.add(FunctionTimer.builder("jinvoke.calls", calls,
+                            c -> c.latency().count(), c -> c.latency().totalNanos(), TimeUnit.NANOSECONDS)
+                    .tags(callTags)
+                    .register(registry));
+            for (double quantile : QUANTILES) {
+                meters.add(TimeGauge.builder("jinvoke.calls.latency", calls, TimeUnit.NANOSECONDS,
+                                c -> c.latency().percentileNanos(quantile))
+                        .tags(callTags.and("quantile", Double.toString(quantile)))
+                        .register(registry));
+            }
+            meters.add(TimeGauge.builder("jinvoke.calls.max", calls, TimeUnit.NANOSECONDS, c -> c.latency().maxNanos())
+                    .tags(callTags)
+                    .register(registry));
+            meters.add(FunctionCounter.builder("jinvoke.calls.failures", calls, CallMetrics::failures)
+                    .tags(callTags)
+                    .register(registry));
+            meters.add(FunctionCounter.builder("jinvoke.calls.timeouts", calls, CallMetrics::timeouts)
+                    .tags(callTags)
+                    .register(registry));
+            return meters;
+        }
+    }
+
+    private static double roundTrip(RpcMetrics metrics, String clientId) {
+        long nanos = metrics.roundTrip(clientId);
+        return nanos < 0 ? Double.NaN : nanos;
+    }
+}
@@ -0,0 +1,285 @@
+package io.jinvoke.rpc.metrics;
+
+import io.jinvoke.rpc.protocol.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Runtime metrics of one client or hub: call latencies, calls in flight and
+ * round-trip times per client, frames and bytes per message type, failures and timeouts, and the
+ * effect of caller-side result caches.
+ * <p>
+ * Recording never allocates. Counters exist for every message type up front, and
+ * whoever records calls looks their {@link CallMetrics} up once and keeps it.
+ * The values are read over JMX ({@link #registerMBean}) or through Micrometer
+ * ({@link MicrometerMetrics}); {@link Listener}s learn about entries that come
+ * and go, such as the methods called for the first time or the clients of a hub.
+ */
+public final class RpcMetrics {
+    private static final Logger log = LoggerFactory.getLogger(RpcMetrics.class);
+    private static final Protocol.MessageType[] TYPES = Protocol.MessageType.values();
+
+    public enum Side {
+        /** Calls made through proxies, until their result arrived. */
+        CALLER,
+        /** {@code @Rpc} methods run for remote callers. */
+        TARGET,
+        /** Requests routed by a hub, until their target answered. */
+        HUB
+    }
+
+    /**
+     * Told about entries added and removed after it was added.
+     */
+    public interface Listener {
+        default void callsAdded(CallMetrics calls) {
+        }
+
+        default void callsRemoved(CallMetrics calls) {
+        }
+
+        default void clientAdded(String clientId) {
+        }
+
+        default void clientRemoved(String clientId) {
+        }
+
+        default void cacheAdded(CacheMetrics cache) {
+        }
+    }
+
+    private final LongAdder[] framesIn = adders();
+    private final LongAdder[] bytesIn = adders();
+    private final LongAdder[] framesOut = adders();
+    private final LongAdder[] bytesOut = adders();
+    private final Map<Side, Map<String, CallMetrics>> calls = new EnumMap<>(Side.class);
+    private final Map<String, IntSupplier> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> roundTrips = new ConcurrentHashMap<>();
+    private final Map<String, CacheMetrics> caches = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ObjectName mbean;
+
+    public RpcMetrics() {
+        for (Side side : Side.values()) {
+            calls.put(side, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void frameIn(Protocol.MessageType type, int bytes) {
+        framesIn[type.ordinal()].increment();
+        bytesIn[type.ordinal()].add(bytes);
+    }
+
+    public void frameOut(Protocol.MessageType type, int bytes) {
+        framesOut[type.ordinal()].increment();
+        bytesOut[type.ordinal()].add(bytes);
+    }
+
+    public long framesIn(Protocol.MessageType type) {
+        return framesIn[type.ordinal()].sum();
+    }
+
+    public long bytesIn(Protocol.MessageType type) {
+        return bytesIn[type.ordinal()].sum();
+    }
+
+    public long framesOut(Protocol.MessageType type) {
+        return framesOut[type.ordinal()].sum();
+    }
+
+    public long bytesOut(Protocol.MessageType type) {
+        return bytesOut[type.ordinal()].sum();
+    }
+
+    /**
+     * @return the metrics of the calls to {@code name} on {@code side}, created
+     * on first use
+     */
+    public CallMetrics calls(Side side, String name) {
+        Map<String, CallMetrics> bySide = calls.get(side);
+        CallMetrics existing = bySide.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        boolean[] created = {false};
+        CallMetrics result = bySide.computeIfAbsent(name, _ -> {
+            created[0] = true;
+            return new CallMetrics(side, name);
+        });
+        if (created[0]) {
+            listeners.forEach(listener -> listener.callsAdded(result));
+        }
+        return result;
+    }
+
+    public Collection<CallMetrics> calls(Side side) {
+        return Collections.unmodifiableCollection(calls.get(side).values());
+    }
+
+    /**
+     * Forgets the calls to {@code name} on {@code side}, e.g. to a client that left
+     * the hub.
+     */
+    public void removeCalls(Side side, String name) {
+        CallMetrics removed = calls.get(side).remove(name);
+        if (removed != null) {
+            listeners.forEach(listener -> listener.callsRemoved(removed));
+        }
+    }
+
+    /**
+     * Reports the calls in flight for {@code clientId} as counted by {@code count}
+     * until {@link #removeInFlight} is called.
+     */
+    public void inFlight(String clientId, IntSupplier count) {
+        if (inFlight.putIfAbsent(clientId, count) == null) {
+            listeners.forEach(listener -> listener.clientAdded(clientId));
+        }
+    }
+
+    /**
+     * Reports the round-trip time to {@code clientId} in nanoseconds as measured
+     * by {@code nanos}, negative while unknown, until {@link #removeInFlight} is
+     * called.
+     */
+    public void roundTrip(String clientId, LongSupplier nanos) {
+        roundTrips.put(clientId, nanos);
+    }
+
+    /**
+     * Stops reporting calls in flight and the round-trip time for {@code clientId}.
+     */
+    public void removeInFlight(String clientId) {
+        roundTrips.remove(clientId);
+        if (inFlight.remove(clientId) != null) {
+            listeners.forEach(listener -> listener.clientRemoved(clientId));
+        }
+    }
+
+    /**
+     * @return calls in flight for {@code clientId}, or {@code -1} if it is not reported
+     */
+    public int inFlight(String clientId) {
+        IntSupplier count = inFlight.get(clientId);
+        return count == null ? -1 : count.getAsInt();
+    }
+
+    /**
+     * @return calls in flight per client, sorted by client id
+     */
+    public Map<String, Integer> inFlight() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        inFlight.forEach((clientId, count) -> snapshot.put(clientId, count.getAsInt()));
+        return snapshot;
+    }
+
+    /**
+     * @return the round-trip time to {@code clientId} in nanoseconds, or {@code -1}
+     * if it is not known
+     */
+    public long roundTrip(String clientId) {
+        LongSupplier nanos = roundTrips.get(clientId);
+        return nanos == null ? -1 : Math.max(-1, nanos.getAsLong());
+    }
+
+    /**
+     * @return round-trip times in nanoseconds per client whose time is known,
+     * sorted by client id
+     */
+    public Map<String, Long> roundTrips() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        roundTrips.forEach((clientId, nanos) -> {
+            long roundTrip = nanos.getAsLong();
+            if (roundTrip >= 0) {
+                snapshot.put(clientId, roundTrip);
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * @return the metrics of the result cache {@code name}, holding as many
+     * entries as {@code size} counts; created on first use, when {@code size}
+     * is kept
+     */
+    public CacheMetrics cache(String name, IntSupplier size) {
+        CacheMetrics existing = caches.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        boolean[] created = {false};
+        CacheMetrics result = caches.computeIfAbsent(name, _ -> {
+            created[0] = true;
+            return new CacheMetrics(name, size);
+        });
+        if (created[0]) {
+            listeners.forEach(listener -> listener.cacheAdded(result));
+        }
+        return result;
+    }
+
+    public Collection<CacheMetrics> caches() {
+        return Collections.unmodifiableCollection(caches.values());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers an {@link RpcMetricsMXBean} named
+     * {@code io.jinvoke.rpc:type=<type>,name=<name>} with the platform MBean
+     * server, replacing any earlier registration of these metrics. Failing to
+     * register is logged, not thrown.
+     */
+    public void registerMBean(String type, String name) {
+        unregisterMBean();
+        try {
+            ObjectName objectName = new ObjectName("io.jinvoke.rpc:type=" + type
+                    + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsView(this), objectName);
+            mbean = objectName;
+        } catch (JMException e) {
+            log.warn("Metrics not registered with JMX as {}/{}: {}", type, name, e.getMessage());
+        }
+    }
+
+    public void unregisterMBean() {
+        ObjectName objectName = mbean;
+        mbean = null;
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.debug("Metrics MBean {} already gone", objectName);
+            }
+        }
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[TYPES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,47 @@
+package io.jinvoke.rpc.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link RpcMetrics}. Counters are keyed by message type name and
+ * latencies are given in milliseconds.
+ */
+public interface RpcMetricsMXBean {
+
+    Map<String, Long> getFramesIn();
+
+    Map<String, Long> getFramesOut();
+
+    Map<String, Long> getBytesIn();
+
+    Map<String, Long> getBytesOut();
+
+    /**
+     * Calls in flight per client id.
+     */
+    Map<String, Integer> getInFlight();
+
+    /**
+     * Smoothed round-trip time per client id whose connection was pinged while idle.
+     */
+    Map<String, Double> getRoundTripMillis();
+
+    List<CallStats> getCalls();
+
+    List<CacheStats> getCaches();
+
+    /**
+     * What {@link CallMetrics} recorded so far.
+     */
+    record CallStats(String side, String name, long count, long failures, long timeouts,
+                     double meanMillis, double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+    }
+
+    /**
+     * What {@link CacheMetrics} recorded so far; {@code hitRatio} is {@code NaN}
+     * before the first lookup.
+     */
+    record CacheStats(String name, int size, long hits, long misses, long evictions, double hitRatio) {
+    }
+}
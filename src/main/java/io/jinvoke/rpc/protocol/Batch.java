@@ -0,0 +1,19 @@
+package io.jinvoke.rpc.protocol;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * BATCH payload: requests or results sent together in one frame, each a complete
+ * INVOKE, FORWARD or RESULT frame of its own.
+ */
+public record Batch(List<Frame> frames) implements Protocol.Payload, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public Batch {
+        frames = List.copyOf(Objects.requireNonNull(frames, "frames required"));
+    }
+}
@@ -0,0 +1,23 @@
+package io.jinvoke.rpc.protocol;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * CREDIT payload: the caller of a streaming invocation allows the target to send
+ * {@code amount} more elements. A negative amount cancels the stream.
+ */
+public record Credit(long amount) implements Protocol.Payload, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Credit CANCEL = new Credit(-1);
+
+    public static Credit cancel() {
+        return CANCEL;
+    }
+
+    public boolean isCancel() {
+        return amount < 0;
+    }
+}
@@ -1,25 +1,30 @@
 package io.jinvoke.rpc.protocol;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
 
 public record Frame(
-        String messageId,
+        long messageId,
         Protocol.MessageType type,
         Protocol.Payload payload
 ) implements Serializable {
 
+    /**
+     * Id carried by frames that are not part of a request/response exchange.
+     */
+    public static final long NO_ID = 0L;
+
     public Frame {
-        Objects.requireNonNull(messageId, "messageId required");
         Objects.requireNonNull(type, "type required");
         validatePayload(type, payload);
     }
 
     private static void validatePayload(Protocol.MessageType type, Protocol.Payload payload) {
         boolean needsPayload = switch (type) {
-            case INVOKE, FORWARD, RESULT, REGISTER -> true;
-            case HEARTBEAT -> false;
+            case INVOKE, FORWARD, RESULT, REGISTER, PRESENCE, LOOKUP, STREAM, CREDIT, BATCH, INVALIDATE -> true;
+            case PING, PONG -> false;
+            case CHUNK -> throw new IllegalArgumentException("CHUNK frames only exist on the wire");
         };
 
         if (needsPayload && payload == null) {
@@ -34,7 +39,7 @@ public record Frame(
         return new Frame(request.requestId(), Protocol.MessageType.INVOKE, request);
     }
 
-    public static Frame forward(String messageId, InvocationRequest request) {
+    public static Frame forward(long messageId, InvocationRequest request) {
         return new Frame(messageId, Protocol.MessageType.FORWARD, request);
     }
 
@@ -42,16 +47,57 @@ public record Frame(
         return new Frame(result.requestId(), Protocol.MessageType.RESULT, result);
     }
 
+    /**
+     * One element of a streamed result; the stream ends with a RESULT frame.
+     */
+    public static Frame stream(long messageId, Object element) {
+        return new Frame(messageId, Protocol.MessageType.STREAM, InvocationResult.success(messageId, element));
+    }
+
+    public static Frame credit(long messageId, Credit credit) {
+        return new Frame(messageId, Protocol.MessageType.CREDIT, credit);
+    }
+
+    /**
+     * Requests or results sent together; never a STREAM, CREDIT or control frame.
+     */
+    public static Frame batch(List<Frame> frames) {
+        return new Frame(NO_ID, Protocol.MessageType.BATCH, new Batch(frames));
+    }
+
     public static Frame register(String clientId) {
-        return new Frame(newId(), Protocol.MessageType.REGISTER, new Registration(clientId));
+        return register(new Registration(clientId));
+    }
+
+    public static Frame register(Registration registration) {
+        return new Frame(NO_ID, Protocol.MessageType.REGISTER, registration);
+    }
+
+    public static Frame presence(Presence presence) {
+        return new Frame(NO_ID, Protocol.MessageType.PRESENCE, presence);
+    }
+
+    public static Frame lookup(long messageId, Lookup lookup) {
+        return new Frame(messageId, Protocol.MessageType.LOOKUP, lookup);
+    }
+
+    public static Frame invalidate(Invalidation invalidation) {
+        return new Frame(NO_ID, Protocol.MessageType.INVALIDATE, invalidation);
     }
 
-    public static Frame heartbeat() {
-        return new Frame(newId(), Protocol.MessageType.HEARTBEAT, null);
+    /**
+     * Liveness probe of an idle connection, carrying the sender's
+     * {@link System#nanoTime()} in place of a request id.
+     */
+    public static Frame ping(long sentAt) {
+        return new Frame(sentAt, Protocol.MessageType.PING, null);
     }
 
-    private static String newId() {
-        return UUID.randomUUID().toString();
+    /**
+     * Answer to the PING sent at {@code sentAt}; never answered itself.
+     */
+    public static Frame pong(long sentAt) {
+        return new Frame(sentAt, Protocol.MessageType.PONG, null);
     }
 
     public boolean hasPayload() {
@@ -78,4 +124,39 @@ public record Frame(
         }
         return reg;
     }
+
+    public Lookup asLookup() {
+        if (!(payload instanceof Lookup lookup)) {
+            throw new IllegalStateException("Not a lookup frame: " + type);
+        }
+        return lookup;
+    }
+
+    public Credit asCredit() {
+        if (!(payload instanceof Credit credit)) {
+            throw new IllegalStateException("Not a credit frame: " + type);
+        }
+        return credit;
+    }
+
+    public Batch asBatch() {
+        if (!(payload instanceof Batch batch)) {
+            throw new IllegalStateException("Not a batch frame: " + type);
+        }
+        return batch;
+    }
+
+    public Presence asPresence() {
+        if (!(payload instanceof Presence presence)) {
+            throw new IllegalStateException("Not a presence frame: " + type);
+        }
+        return presence;
+    }
+
+    public Invalidation asInvalidation() {
+        if (!(payload instanceof Invalidation invalidation)) {
+            throw new IllegalStateException("Not an invalidation frame: " + type);
+        }
+        return invalidation;
+    }
 }
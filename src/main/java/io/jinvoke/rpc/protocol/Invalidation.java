@@ -0,0 +1,26 @@
+package io.jinvoke.rpc.protocol;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * INVALIDATE payload. A target tells callers that results of {@code targetClass}
+ * they cached are stale: those of {@code targetMethod} for the arguments whose
+ * canonical JSON form is {@code args}, of every call to {@code targetMethod}
+ * when {@code args} is {@code null}, or of every method when that is
+ * {@code null} too. The hub passes it on to all other clients.
+ */
+public record Invalidation(String clientId, String targetClass, String targetMethod, String args)
+        implements Protocol.Payload, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public Invalidation {
+        Objects.requireNonNull(clientId, "clientId required");
+        Objects.requireNonNull(targetClass, "targetClass required");
+        if (targetMethod == null && args != null) {
+            throw new IllegalArgumentException("args require targetMethod");
+        }
+    }
+}
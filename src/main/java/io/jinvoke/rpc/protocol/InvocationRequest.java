@@ -4,23 +4,30 @@ import java.io.Serial;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Objects;
-import java.util.UUID;
 
+/**
+ * A call to {@code targetClass.targetMethod} on the client or service group named
+ * {@code clientId}. {@code routingKey}, when set, pins calls with equal keys to the
+ * same member of a group; like {@code clientId} it travels in the routing header.
+ * A {@code streaming} call receives its result element by element, and its
+ * {@code returnType} names the element type.
+ */
 public record InvocationRequest(
-        String requestId,
+        long requestId,
         String clientId,
         String targetClass,
         String targetMethod,
         Object[] params,
         String[] paramTypes,
-        String returnType
+        String returnType,
+        String routingKey,
+        boolean streaming
 ) implements Protocol.Payload, Serializable {
 
     @Serial
     private static final long serialVersionUID = 1L;
 
     public InvocationRequest {
-        Objects.requireNonNull(requestId, "requestId required");
         Objects.requireNonNull(clientId, "clientId required");
         Objects.requireNonNull(targetClass, "targetClass required");
         Objects.requireNonNull(targetMethod, "targetMethod required");
@@ -33,15 +40,41 @@ public record InvocationRequest(
         }
     }
 
-    public static InvocationRequest of(String clientId, String targetClass,
+    public InvocationRequest(long requestId, String clientId, String targetClass, String targetMethod,
+                             Object[] params, String[] paramTypes, String returnType) {
+        this(requestId, clientId, targetClass, targetMethod, params, paramTypes, returnType, null, false);
+    }
+
+    public static InvocationRequest of(long requestId, String clientId, String targetClass,
                                        String targetMethod, Object[] params, String[] paramTypes, String returnType) {
+        return of(requestId, clientId, targetClass, targetMethod, params, paramTypes, returnType, null);
+    }
+
+    public static InvocationRequest of(long requestId, String clientId, String targetClass, String targetMethod,
+                                       Object[] params, String[] paramTypes, String returnType, String routingKey) {
         return new InvocationRequest(
-                UUID.randomUUID().toString(),
+                requestId,
                 clientId, targetClass, targetMethod,
-                params, paramTypes, returnType
+                params, paramTypes, returnType, routingKey, false
         );
     }
 
+    /**
+     * Same request, asking for its result as a stream.
+     */
+    public InvocationRequest asStreaming() {
+        return new InvocationRequest(requestId, clientId, targetClass, targetMethod,
+                params, paramTypes, returnType, routingKey, true);
+    }
+
+    /**
+     * Same request under another id, for sending it again.
+     */
+    public InvocationRequest withRequestId(long requestId) {
+        return new InvocationRequest(requestId, clientId, targetClass, targetMethod,
+                params, paramTypes, returnType, routingKey, streaming);
+    }
+
     @Override
     public Object[] params() {
         return params.clone();
@@ -52,6 +85,13 @@ public record InvocationRequest(
         return paramTypes.clone();
     }
 
+    /**
+     * Compares the declared parameter types without copying them.
+     */
+    public boolean hasParamTypes(String[] types) {
+        return Arrays.equals(paramTypes, types);
+    }
+
     public boolean hasReturnValue() {
         return returnType != null && !"void".equals(returnType);
     }
@@ -67,18 +107,20 @@ public record InvocationRequest(
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof InvocationRequest that)) return false;
-        return Objects.equals(requestId, that.requestId) &&
+        return requestId == that.requestId &&
                 Objects.equals(clientId, that.clientId) &&
                 Objects.equals(targetClass, that.targetClass) &&
                 Objects.equals(targetMethod, that.targetMethod) &&
                 Arrays.equals(params, that.params) &&
                 Arrays.equals(paramTypes, that.paramTypes) &&
-                Objects.equals(returnType, that.returnType);
+                Objects.equals(returnType, that.returnType) &&
+                Objects.equals(routingKey, that.routingKey) &&
+                streaming == that.streaming;
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(requestId, clientId, targetClass, targetMethod, returnType);
+        int result = Objects.hash(requestId, clientId, targetClass, targetMethod, returnType, routingKey, streaming);
         result = 31 * result + Arrays.hashCode(params);
         result = 31 * result + Arrays.hashCode(paramTypes);
         return result;
@@ -7,26 +7,22 @@ import java.util.Objects;
 public sealed interface InvocationResult extends Protocol.Payload, Serializable
         permits InvocationResult.Success, InvocationResult.Failure {
 
-    static Success success(String requestId, Object value) {
+    static Success success(long requestId, Object value) {
         return new Success(requestId, value);
     }
 
-    static Failure failure(String requestId, Throwable error) {
+    static Failure failure(long requestId, Throwable error) {
         return new Failure(requestId, error);
     }
 
-    String requestId();
+    long requestId();
 
     boolean isSuccess();
 
-    record Success(String requestId, Object value) implements InvocationResult {
+    record Success(long requestId, Object value) implements InvocationResult {
         @Serial
         private static final long serialVersionUID = 1L;
 
-        public Success {
-            Objects.requireNonNull(requestId, "requestId required");
-        }
-
         @Override
         public boolean isSuccess() {
             return true;
@@ -37,12 +33,11 @@ public sealed interface InvocationResult extends Protocol.Payload, Serializable
         }
     }
 
-    record Failure(String requestId, Throwable error) implements InvocationResult {
+    record Failure(long requestId, Throwable error) implements InvocationResult {
         @Serial
         private static final long serialVersionUID = 1L;
 
         public Failure {
-            Objects.requireNonNull(requestId, "requestId required");
             Objects.requireNonNull(error, "error required");
         }
 
@@ -52,11 +47,15 @@ public sealed interface InvocationResult extends Protocol.Payload, Serializable
         }
 
         public String errorType() {
-            return error.getClass().getName();
+            return error instanceof RemoteInvocationException remote
+                    ? remote.remoteType()
+                    : error.getClass().getName();
         }
 
         public String errorMessage() {
-            return error.getMessage();
+            return error instanceof RemoteInvocationException remote
+                    ? remote.remoteMessage()
+                    : error.getMessage();
         }
     }
 }
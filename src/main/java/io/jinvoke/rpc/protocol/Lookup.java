@@ -0,0 +1,27 @@
+package io.jinvoke.rpc.protocol;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * LOOKUP payload. A client asks the hub where {@code clientId} accepts direct
+ * connections; the hub answers under the same request id with the host and port,
+ * or port {@code 0} when the client cannot be reached directly.
+ */
+public record Lookup(String clientId, String host, int port) implements Protocol.Payload, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public Lookup {
+        Objects.requireNonNull(clientId, "clientId required");
+    }
+
+    public static Lookup request(String clientId) {
+        return new Lookup(clientId, null, 0);
+    }
+
+    public boolean isReachable() {
+        return host != null && port > 0;
+    }
+}
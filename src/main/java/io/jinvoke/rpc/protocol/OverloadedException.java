@@ -0,0 +1,17 @@
+package io.jinvoke.rpc.protocol;
+
+import java.io.Serial;
+
+/**
+ * Failure of a call the hub refused without forwarding it, because its target
+ * already had too many requests waiting to be written to it. The target never
+ * saw the call, so it is safe to retry later or elsewhere.
+ */
+public class OverloadedException extends RemoteInvocationException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public OverloadedException(String message) {
+        super(OverloadedException.class.getName(), message);
+    }
+}
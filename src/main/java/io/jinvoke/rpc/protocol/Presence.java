@@ -0,0 +1,36 @@
+package io.jinvoke.rpc.protocol;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * PRESENCE payload exchanged between federated hubs: the clients connected to
+ * {@code hubId} and the service groups they form, both by name. A snapshot replaces everything announced earlier over the same
+ * link; otherwise {@code added} and {@code removed} are deltas.
+ */
+public record Presence(String hubId, boolean snapshot, List<String> added, List<String> removed)
+        implements Protocol.Payload, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public Presence {
+        Objects.requireNonNull(hubId, "hubId required");
+        added = added == null ? List.of() : List.copyOf(added);
+        removed = removed == null ? List.of() : List.copyOf(removed);
+    }
+
+    public static Presence snapshot(String hubId, Collection<String> clientIds) {
+        return new Presence(hubId, true, List.copyOf(clientIds), List.of());
+    }
+
+    public static Presence joined(String hubId, String clientId) {
+        return new Presence(hubId, false, List.of(clientId), List.of());
+    }
+
+    public static Presence left(String hubId, String clientId) {
+        return new Presence(hubId, false, List.of(), List.of(clientId));
+    }
+}
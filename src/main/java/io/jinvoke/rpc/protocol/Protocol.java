@@ -15,7 +15,15 @@ public final class Protocol {
         FORWARD,
         RESULT,
         REGISTER,
-        HEARTBEAT;
+        PING,
+        PRESENCE,
+        LOOKUP,
+        STREAM,
+        CREDIT,
+        CHUNK,
+        BATCH,
+        INVALIDATE,
+        PONG;
 
         public static MessageType fromByte(byte b) {
             if (b < 0 || b >= values().length) {
@@ -30,6 +38,7 @@ public final class Protocol {
     }
 
     public sealed interface Payload extends Serializable
-            permits InvocationRequest, InvocationResult, Registration {
+            permits InvocationRequest, InvocationResult, Registration, Presence, Lookup, Credit, Batch,
+            Invalidation {
     }
 }
@@ -4,7 +4,15 @@ import java.io.Serial;
 import java.io.Serializable;
 import java.util.Objects;
 
-public record Registration(String clientId) implements Protocol.Payload, Serializable {
+/**
+ * REGISTER handshake payload. The client proposes a serializer and a compression
+ * codec by name; the server answers with the ones it accepted. A {@code null}
+ * compression means payloads travel uncompressed. {@code directPort} is the port
+ * the client accepts direct connections on, {@code 0} if it does not.
+ * {@code group} is the service group the client serves as one instance of, if any.
+ */
+public record Registration(String clientId, String serializer, String compression, int directPort,
+                           String group) implements Protocol.Payload, Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
@@ -14,4 +22,12 @@ public record Registration(String clientId) implements Protocol.Payload, Seriali
             throw new IllegalArgumentException("clientId cannot be blank");
         }
     }
+
+    public Registration(String clientId) {
+        this(clientId, null, null, 0, null);
+    }
+
+    public Registration(String clientId, String serializer) {
+        this(clientId, serializer, null, 0, null);
+    }
 }
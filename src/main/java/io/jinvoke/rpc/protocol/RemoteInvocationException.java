@@ -0,0 +1,41 @@
+package io.jinvoke.rpc.protocol;
+
+import java.io.Serial;
+
+/**
+ * Failure raised on the caller for an exception thrown by a remote method.
+ * The remote exception class is kept by name only, so callers never
+ * instantiate types chosen by the peer.
+ */
+public class RemoteInvocationException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final String remoteType;
+    private final String remoteMessage;
+
+    public RemoteInvocationException(String remoteType, String remoteMessage) {
+        super(remoteMessage == null ? remoteType : remoteType + ": " + remoteMessage);
+        this.remoteType = remoteType;
+        this.remoteMessage = remoteMessage;
+    }
+
+    /**
+     * The exception for a failure received from the network: an
+     * {@link OverloadedException} when the hub refused the call, a plain
+     * {@code RemoteInvocationException} otherwise.
+     */
+    public static RemoteInvocationException of(String remoteType, String remoteMessage) {
+        return OverloadedException.class.getName().equals(remoteType)
+                ? new OverloadedException(remoteMessage)
+                : new RemoteInvocationException(remoteType, remoteMessage);
+    }
+
+    public String remoteType() {
+        return remoteType;
+    }
+
+    public String remoteMessage() {
+        return remoteMessage;
+    }
+}
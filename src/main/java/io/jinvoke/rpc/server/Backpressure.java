@@ -0,0 +1,165 @@
+package io.jinvoke.rpc.server;
+
+import io.jinvoke.rpc.codec.RoutedBatch;
+import io.jinvoke.rpc.codec.RoutedFrame;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the hub from buffering without bound for a target that reads slower than
+ * its callers send.
+ * <p>
+ * Requests forwarded to a connection are counted until they are written to its
+ * socket. Once {@code maxQueuedBytes} are waiting, new requests are refused, while
+ * the chunks of requests already accepted still go through. While a target
+ * connection is unwritable, the hub also stops reading from the client
+ * connections feeding it, so further requests wait in their socket buffers and
+ * TCP slows the callers down. Peer links are never paused, as they carry the
+ * traffic of many callers.
+ * <p>
+ * A paused connection reads nothing, not even the caller's pings, so the hub's
+ * {@link io.jinvoke.rpc.transport.LivenessHandler} skips its checks while
+ * {@code autoRead} is off rather than take the pause for a dead caller. The
+ * caller cannot tell a pause from a dead hub: one that outlasts its idle time
+ * times its allowed missed pings makes the caller reconnect.
+ */
+final class Backpressure {
+    private static final Logger log = LoggerFactory.getLogger(Backpressure.class);
+
+    // target channel -> bytes of requests forwarded to it and not written yet
+    private static final AttributeKey<AtomicLong> QUEUED = AttributeKey.valueOf("queuedBytes");
+
+    // target channel -> connections not read from until it is writable again
+    private static final AttributeKey<Set<Channel>> PAUSED = AttributeKey.valueOf("pausedOrigins");
+
+    // origin channel -> unwritable targets it is paused for
+    private static final AttributeKey<AtomicInteger> PAUSED_BY = AttributeKey.valueOf("pausedBy");
+
+    private final SessionRegistry registry;
+    private final long maxQueuedBytes;
+
+    Backpressure(SessionRegistry registry, long maxQueuedBytes) {
+        this.registry = registry;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * @return whether {@code target} has room for another request
+     */
+    boolean admit(Channel target) {
+        AtomicLong queued = target.attr(QUEUED).get();
+        return queued == null || queued.get() < maxQueuedBytes;
+    }
+
+    /**
+     * Writes a request, or a chunk of one, that {@code origin} sent for
+     * {@code target}, and pauses {@code origin} if {@code target} cannot keep up.
+     */
+    void forward(Channel origin, Channel target, RoutedFrame frame) {
+        forward(origin, target, frame, frame.content().readableBytes());
+    }
+
+    /**
+     * Writes requests that {@code origin} sent for {@code target} in one batch.
+     */
+    void forward(Channel origin, Channel target, RoutedBatch batch) {
+        forward(origin, target, batch, batch.bytes());
+    }
+
+    private void forward(Channel origin, Channel target, Object message, long bytes) {
+        AtomicLong queued = queued(target);
+        queued.addAndGet(bytes);
+        target.writeAndFlush(message).addListener(f -> queued.addAndGet(-bytes));
+        if (!target.isWritable() && origin != target && !registry.isPeerLink(origin)) {
+            pause(origin, target);
+        }
+    }
+
+    /**
+     * Reads again from the connections paused for {@code target}, once it is
+     * writable again or closed.
+     */
+    static void resume(Channel target) {
+        Set<Channel> paused = target.attr(PAUSED).get();
+        if (paused != null) {
+            for (Channel origin : paused) {
+                resume(paused, origin);
+            }
+        }
+    }
+
+    private static AtomicLong queued(Channel target) {
+        AtomicLong queued = target.attr(QUEUED).get();
+        if (queued == null) {
+            AtomicLong created = new AtomicLong();
+            queued = target.attr(QUEUED).setIfAbsent(created);
+            if (queued == null) {
+                queued = created;
+            }
+        }
+        return queued;
+    }
+
+    private static void pause(Channel origin, Channel target) {
+        Set<Channel> paused = target.attr(PAUSED).get();
+        if (paused == null) {
+            Set<Channel> created = ConcurrentHashMap.newKeySet();
+            paused = target.attr(PAUSED).setIfAbsent(created);
+            if (paused == null) {
+                paused = created;
+                target.closeFuture().addListener(f -> resume(target));
+            }
+        }
+        if (!paused.add(origin)) {
+            return;
+        }
+        AtomicInteger pausedBy = origin.attr(PAUSED_BY).get();
+        if (pausedBy == null) {
+            AtomicInteger created = new AtomicInteger();
+            pausedBy = origin.attr(PAUSED_BY).setIfAbsent(created);
+            if (pausedBy == null) {
+                pausedBy = created;
+            }
+        }
+        pausedBy.incrementAndGet();
+        updateAutoRead(origin);
+        // The target may have drained before the origin was added
+        if (target.isWritable() || !target.isActive()) {
+            resume(paused, origin);
+        }
+    }
+
+    private static void resume(Set<Channel> paused, Channel origin) {
+        if (paused.remove(origin)) {
+            origin.attr(PAUSED_BY).get().decrementAndGet();
+            updateAutoRead(origin);
+        }
+    }
+
+    // Applied on the origin's event loop against the latest count, so pauses and
+    // resumes racing on other threads cannot leave a stale setting behind
+    private static void updateAutoRead(Channel origin) {
+        EventLoop loop = origin.eventLoop();
+        if (loop.inEventLoop()) {
+            applyAutoRead(origin);
+        } else {
+            loop.execute(() -> applyAutoRead(origin));
+        }
+    }
+
+    private static void applyAutoRead(Channel origin) {
+        boolean read = origin.attr(PAUSED_BY).get().get() == 0;
+        if (origin.config().isAutoRead() != read) {
+            origin.config().setAutoRead(read);
+            log.debug("{} reading from {}", read ? "Resumed" : "Paused", origin);
+        }
+    }
+}
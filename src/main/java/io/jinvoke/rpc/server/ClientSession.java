@@ -0,0 +1,119 @@
+package io.jinvoke.rpc.server;
+
+import io.jinvoke.rpc.transport.LivenessHandler;
+import io.netty.channel.Channel;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The connections one client registered under its id. Requests for the client
+ * are spread over them round-robin; the session lasts until the last one closes.
+ */
+final class ClientSession {
+    private static final Channel[] NONE = new Channel[0];
+
+    private final String clientId;
+    private final String group;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile Channel[] channels = NONE;
+
+    ClientSession(String clientId, String group) {
+        this.clientId = clientId;
+        this.group = group;
+    }
+
+    String clientId() {
+        return clientId;
+    }
+
+    /**
+     * @return the service group the client is an instance of, or {@code null}
+     */
+    String group() {
+        return group;
+    }
+
+    /**
+     * @return requests forwarded to the client and not answered yet
+     */
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return the lowest smoothed round-trip time of the client's connections in
+     * nanoseconds, or {@code -1} while none has been measured
+     */
+    long roundTripNanos() {
+        long lowest = -1;
+        for (Channel channel : channels) {
+            long roundTrip = LivenessHandler.roundTripNanos(channel);
+            if (roundTrip >= 0 && (lowest < 0 || roundTrip < lowest)) {
+                lowest = roundTrip;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * @return whether this client is known to answer faster than {@code other}
+     */
+    boolean closerThan(ClientSession other) {
+        long roundTrip = roundTripNanos();
+        long otherRoundTrip = other.roundTripNanos();
+        return roundTrip >= 0 && (otherRoundTrip < 0 || roundTrip < otherRoundTrip);
+    }
+
+    void started() {
+        outstanding.incrementAndGet();
+    }
+
+    void finished(int requests) {
+        outstanding.addAndGet(-requests);
+    }
+
+    synchronized void add(Channel channel) {
+        Channel[] current = channels;
+        Channel[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = channel;
+        channels = added;
+    }
+
+    /**
+     * @return {@code true} if {@code channel} belonged to this session
+     */
+    synchronized boolean remove(Channel channel) {
+        Channel[] current = channels;
+        Channel[] remaining = Arrays.stream(current).filter(ch -> ch != channel).toArray(Channel[]::new);
+        channels = remaining.length == 0 ? NONE : remaining;
+        return remaining.length != current.length;
+    }
+
+    boolean isEmpty() {
+        return channels.length == 0;
+    }
+
+    Channel[] channels() {
+        return channels;
+    }
+
+    /**
+     * @return the next active connection, or {@code null} if none is active
+     */
+    Channel select() {
+        Channel[] current = channels;
+        if (current.length == 1) {
+            return current[0].isActive() ? current[0] : null;
+        }
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < current.length; i++) {
+            Channel channel = current[(start + i) % current.length];
+            if (channel.isActive()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+package io.jinvoke.rpc.server;
+
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.util.PendingTable;
+import io.netty.channel.Channel;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Requests forwarded to one target connection. Callers number their requests per
+ * connection, so the hub hands out its own ids on the target connection and
+ * remembers which origin request each one stands for.
+ * <p>
+ * Every route expires after {@code timeoutNanos} on the shared timer wheel, so a
+ * target that never answers cannot grow the table without bound. Streaming
+ * routes do not expire: a stream may legitimately outlive any timeout, and it
+ * ends with its RESULT, a cancel from the caller, or either side disconnecting.
+ */
+public final class RouteTable {
+    private final AtomicLong ids = new AtomicLong();
+    private final PendingTable<Route> routes = new PendingTable<>();
+    private final Timer timer;
+    private final long timeoutNanos;
+    private final Consumer<Route> onExpired;
+
+    /**
+     * @param calls where the time the target takes to answer is recorded, or {@code null}
+     */
+    public record Route(Channel origin, long requestId, Timeout expiry, long startNanos, CallMetrics calls) {
+
+        public boolean streaming() {
+            return expiry == null;
+        }
+
+        /**
+         * Records the request as answered now, or failed with {@code error}.
+         */
+        void finished(Throwable error) {
+            if (calls != null) {
+                calls.record(startNanos, error);
+            }
+        }
+    }
+
+    RouteTable(Timer timer, long timeoutNanos, Consumer<Route> onExpired) {
+        this.timer = timer;
+        this.timeoutNanos = timeoutNanos;
+        this.onExpired = onExpired;
+    }
+
+    long track(Channel origin, long originRequestId, boolean streaming, CallMetrics calls) {
+        long id = ids.incrementAndGet();
+        Timeout expiry = streaming ? null : timer.newTimeout(_ -> expire(id), timeoutNanos, TimeUnit.NANOSECONDS);
+        routes.put(id, new Route(origin, originRequestId, expiry, System.nanoTime(), calls));
+        return id;
+    }
+
+    Route get(long id) {
+        return routes.get(id);
+    }
+
+    Route remove(long id) {
+        Route route = routes.remove(id);
+        if (route != null && route.expiry() != null) {
+            route.expiry().cancel();
+        }
+        return route;
+    }
+
+    List<Route> removeAll() {
+        List<Route> removed = routes.removeAll();
+        for (Route route : removed) {
+            if (route.expiry() != null) {
+                route.expiry().cancel();
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    private void expire(long id) {
+        Route route = routes.remove(id);
+        if (route != null) {
+            onExpired.accept(route);
+        }
+    }
+}
@@ -1,68 +1,204 @@
 package io.jinvoke.rpc.server;
 
 import io.jinvoke.rpc.codec.FrameCodec;
+import io.jinvoke.rpc.codec.RoutedFrameEncoder;
+import io.jinvoke.rpc.transport.FlushCoalescingHandler;
+import io.jinvoke.rpc.transport.Transport;
+import io.jinvoke.rpc.transport.TransportOptions;
+import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioIoHandler;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
 /**
- * RPC Server that routes invocation requests between clients
+ * RPC Server that routes invocation requests between clients.
+ * <p>
+ * Servers given peer addresses federate: they link to each other, exchange the
+ * clients connected to each, and forward requests for a client connected to a
+ * peer over that peer's link. Links are re-established while the server runs.
  */
 public class RpcServer {
     private static final Logger log = LoggerFactory.getLogger(RpcServer.class);
+    private static final long PEER_RETRY_SECONDS = 2;
 
     private final int port;
+    private final TransportOptions options;
+    private final List<InetSocketAddress> peers;
+    private final HashedWheelTimer timer;
+    private final SessionRegistry registry;
+    private final RoutedFrameEncoder routedEncoder;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private Channel serverChannel;
+    private volatile boolean closing;
 
     public RpcServer(int port) {
+        this(port, TransportOptions.defaults());
+    }
+
+    public RpcServer(int port, TransportOptions options) {
+        this(port, options, List.of());
+    }
+
+    /**
+     * @param peers addresses of the other hubs to federate with
+     */
+    public RpcServer(int port, TransportOptions options, List<InetSocketAddress> peers) {
         this.port = port;
+        this.options = options;
+        this.peers = List.copyOf(peers);
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("jinvoke-rpc-timer", true), 100, TimeUnit.MILLISECONDS);
+        this.registry = new SessionRegistry(UUID.randomUUID().toString(), timer,
+                options.requestTimeoutNanos(), options.groupBalancing());
+        this.routedEncoder = new RoutedFrameEncoder(options.maxPayloadSize(), registry.metrics());
     }
 
+    // Usage: RpcServer [port] [peerHost:peerPort ...]
     static void main(String[] args) throws InterruptedException {
         int port = args.length > 0 ? Integer.parseInt(args[0]) : 8888;
-        new RpcServer(port).start();
+        List<InetSocketAddress> peers = Arrays.stream(args).skip(1)
+                .map(peer -> {
+                    int colon = peer.lastIndexOf(':');
+                    return InetSocketAddress.createUnresolved(peer.substring(0, colon),
+                            Integer.parseInt(peer.substring(colon + 1)));
+                })
+                .toList();
+        new RpcServer(port, TransportOptions.defaults(), peers).start();
     }
 
-    public void start() throws InterruptedException {
-        bossGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
-        workerGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
+    public SessionRegistry registry() {
+        return registry;
+    }
 
+    /**
+     * Binds the server and blocks until it is closed.
+     */
+    public void start() throws InterruptedException {
         try {
-            ServerBootstrap bootstrap = new ServerBootstrap()
-                    .group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .option(ChannelOption.SO_BACKLOG, 128)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ch.pipeline()
-                                    .addLast("codec", new FrameCodec())
-                                    .addLast("handler", new ServerFrameHandler());
-                        }
-                    });
-
-            ChannelFuture future = bootstrap.bind(port).sync();
-            log.info("RPC Server started on port {}", port);
-
-            future.channel().closeFuture().sync();
+            bind().closeFuture().sync();
         } finally {
             shutdown();
         }
     }
 
+    /**
+     * Binds the server and returns once it accepts connections; {@link #shutdown()} stops it.
+     */
+    public Channel bind() throws InterruptedException {
+        Transport transport = options.transport().resolve();
+        bossGroup = new MultiThreadIoEventLoopGroup(options.bossThreads(), transport.ioHandlerFactory());
+        workerGroup = new MultiThreadIoEventLoopGroup(options.workerThreads(), transport.ioHandlerFactory());
+
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(transport.serverChannelClass())
+                .childHandler(initializer(false))
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark());
+
+        if (transport.isSocket()) {
+            bootstrap.option(ChannelOption.SO_BACKLOG, options.backlog())
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childOption(ChannelOption.TCP_NODELAY, options.tcpNoDelay());
+            if (options.sendBufferSize() > 0) {
+                bootstrap.childOption(ChannelOption.SO_SNDBUF, options.sendBufferSize());
+            }
+            if (options.receiveBufferSize() > 0) {
+                bootstrap.childOption(ChannelOption.SO_RCVBUF, options.receiveBufferSize());
+            }
+        }
+
+        try {
+            serverChannel = bootstrap.bind(transport.address(null, port)).sync().channel();
+        } catch (InterruptedException | RuntimeException e) {
+            shutdown();
+            throw e;
+        }
+        log.info("RPC Server started on port {} ({}, hub {})", port, transport, registry.hubId());
+        registry.metrics().registerMBean("Hub", registry.hubId());
+
+        if (!peers.isEmpty()) {
+            Bootstrap peerBootstrap = new Bootstrap()
+                    .group(workerGroup)
+                    .channel(transport.channelClass())
+                    .handler(initializer(true))
+                    .option(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark());
+            if (transport.isSocket()) {
+                peerBootstrap.option(ChannelOption.SO_KEEPALIVE, true)
+                        .option(ChannelOption.TCP_NODELAY, options.tcpNoDelay());
+            }
+            for (InetSocketAddress peer : peers) {
+                connectPeer(peerBootstrap, transport.address(peer.getHostString(), peer.getPort()));
+            }
+        }
+        return serverChannel;
+    }
+
     public void shutdown() {
+        closing = true;
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
         if (workerGroup != null) {
             workerGroup.shutdownGracefully();
         }
         if (bossGroup != null) {
             bossGroup.shutdownGracefully();
         }
+        timer.stop();
+        registry.metrics().unregisterMBean();
         log.info("RPC Server shutdown");
     }
+
+    private WriteBufferWaterMark waterMark() {
+        return new WriteBufferWaterMark(options.writeBufferLowWaterMark(), options.writeBufferHighWaterMark());
+    }
+
+    private ChannelInitializer<Channel> initializer(boolean peerLink) {
+        return new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                FlushCoalescingHandler flush = options.newFlushHandler();
+                if (flush != null) {
+                    ch.pipeline().addLast("flush", flush);
+                }
+                ch.pipeline()
+                        .addLast("codec", new FrameCodec(true, options.chunkSize(), options.maxPayloadSize(),
+                                options.reassemblyLimit(), registry.metrics()))
+                        .addLast("liveness", options.newLivenessHandler())
+                        .addLast("routedEncoder", routedEncoder)
+                        .addLast("handler", new ServerFrameHandler(registry, options, peerLink));
+            }
+        };
+    }
+
+    private void connectPeer(Bootstrap bootstrap, SocketAddress address) {
+        if (closing) {
+            return;
+        }
+        bootstrap.connect(address).addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                log.info("Linked to peer hub at {}", address);
+                future.channel().closeFuture().addListener(f -> retryPeer(bootstrap, address));
+            } else {
+                log.warn("Peer hub at {} unreachable: {}", address, future.cause().getMessage());
+                retryPeer(bootstrap, address);
+            }
+        });
+    }
+
+    private void retryPeer(Bootstrap bootstrap, SocketAddress address) {
+        if (!closing) {
+            workerGroup.schedule(() -> connectPeer(bootstrap, address), PEER_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
 }
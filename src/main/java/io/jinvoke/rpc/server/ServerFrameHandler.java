@@ -1,8 +1,23 @@
 package io.jinvoke.rpc.server;
 
+import io.jinvoke.rpc.codec.Compression;
+import io.jinvoke.rpc.codec.RoutedBatch;
+import io.jinvoke.rpc.codec.RoutedFrame;
+import io.jinvoke.rpc.codec.Serializer;
+import io.jinvoke.rpc.codec.Serializers;
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.metrics.RpcMetrics;
+import io.jinvoke.rpc.protocol.Credit;
 import io.jinvoke.rpc.protocol.Frame;
-import io.jinvoke.rpc.protocol.InvocationRequest;
+import io.jinvoke.rpc.protocol.Invalidation;
 import io.jinvoke.rpc.protocol.InvocationResult;
+import io.jinvoke.rpc.protocol.Lookup;
+import io.jinvoke.rpc.protocol.OverloadedException;
+import io.jinvoke.rpc.protocol.Presence;
+import io.jinvoke.rpc.protocol.Protocol;
+import io.jinvoke.rpc.protocol.Registration;
+import io.jinvoke.rpc.transport.TransportOptions;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -10,19 +25,48 @@ import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ServerFrameHandler extends SimpleChannelInboundHandler<Frame> {
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ServerFrameHandler extends SimpleChannelInboundHandler<Object> {
     private static final Logger log = LoggerFactory.getLogger(ServerFrameHandler.class);
     private static final AttributeKey<String> CLIENT_ID = AttributeKey.valueOf("clientId");
+    private static final AttributeKey<Lookup> DIRECT_ADDRESS = AttributeKey.valueOf("directAddress");
+
+    private final SessionRegistry registry;
+    private final TransportOptions options;
+    private final boolean peerLink;
+    private final Backpressure backpressure;
+
+    /**
+     * @param peerLink whether this end opened the connection as a link to a peer hub
+     */
+    public ServerFrameHandler(SessionRegistry registry, TransportOptions options, boolean peerLink) {
+        this.registry = registry;
+        this.options = options;
+        this.peerLink = peerLink;
+        this.backpressure = new Backpressure(registry, options.maxQueuedBytes());
+    }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, Frame frame) {
+    public void channelActive(ChannelHandlerContext ctx) {
+        if (peerLink) {
+            openPeerLink(ctx);
+        }
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
         try {
-            switch (frame.type()) {
-                case INVOKE -> handleInvoke(ctx, frame);
-                case REGISTER -> handleRegister(ctx, frame);
-                case RESULT -> handleResult(frame);
-                case HEARTBEAT -> ctx.writeAndFlush(Frame.heartbeat());
-                default -> log.warn("Unexpected frame: {}", frame.type());
+            switch (msg) {
+                case RoutedFrame routed -> route(ctx, routed);
+                case RoutedBatch batch -> handleBatch(ctx, batch);
+                case Frame frame -> handleFrame(ctx, frame);
+                default -> log.warn("Unexpected message: {}", msg);
             }
         } catch (Exception e) {
             log.error("Error handling frame", e);
@@ -30,63 +74,285 @@ public class ServerFrameHandler extends SimpleChannelInboundHandler<Frame> {
         }
     }
 
-    private void handleInvoke(ChannelHandlerContext ctx, Frame frame) {
-        InvocationRequest request = frame.asRequest();
-        String targetClientId = request.clientId();
+    private void route(ChannelHandlerContext ctx, RoutedFrame frame) {
+        switch (frame.type()) {
+            case INVOKE -> handleInvoke(ctx, frame);
+            case RESULT -> handleResult(ctx, frame);
+            case STREAM -> handleStream(ctx, frame);
+            case CREDIT -> handleCredit(ctx, frame);
+            case CHUNK -> handleChunk(ctx, frame);
+            default -> log.warn("Unexpected routed frame: {}", frame.type());
+        }
+    }
+
+    private void handleFrame(ChannelHandlerContext ctx, Frame frame) {
+        switch (frame.type()) {
+            case REGISTER -> handleRegister(ctx, frame);
+            case PRESENCE -> handlePresence(ctx, frame);
+            case LOOKUP -> handleLookup(ctx, frame);
+            case INVALIDATE -> handleInvalidate(ctx, frame);
+            default -> log.warn("Unexpected frame: {}", frame.type());
+        }
+    }
+
+    private void handleInvoke(ChannelHandlerContext ctx, RoutedFrame frame) {
+        Routed forward = invoke(ctx, frame);
+        if (forward != null) {
+            backpressure.forward(ctx.channel(), forward.destination(), forward.frame());
+            if (log.isDebugEnabled()) {
+                log.debug("Forwarded {} to client {}", frame.requestId(), frame.clientId());
+            }
+        }
+    }
+
+    /**
+     * Splits a batch by destination: requests by target, results by caller. Each
+     * destination gets its share as one batch again, or as a single frame.
+     */
+    private void handleBatch(ChannelHandlerContext ctx, RoutedBatch batch) {
+        Map<Channel, List<RoutedFrame>> requests = new LinkedHashMap<>();
+        Map<Channel, List<RoutedFrame>> results = new LinkedHashMap<>();
+        for (RoutedFrame frame : batch.frames()) {
+            switch (frame.type()) {
+                case INVOKE -> add(requests, invoke(ctx, frame));
+                case RESULT -> add(results, result(ctx, frame));
+                default -> log.warn("Unexpected frame in batch: {}", frame.type());
+            }
+        }
+        requests.forEach((target, frames) -> {
+            if (frames.size() == 1) {
+                backpressure.forward(ctx.channel(), target, frames.getFirst());
+            } else {
+                backpressure.forward(ctx.channel(), target, new RoutedBatch(frames));
+            }
+        });
+        results.forEach((origin, frames) ->
+                origin.writeAndFlush(frames.size() == 1 ? frames.getFirst() : new RoutedBatch(frames)));
+        if (log.isDebugEnabled()) {
+            log.debug("Routed batch of {} to {} destinations", batch.frames().size(), requests.size() + results.size());
+        }
+    }
+
+    private static void add(Map<Channel, List<RoutedFrame>> destinations, Routed routed) {
+        if (routed != null) {
+            destinations.computeIfAbsent(routed.destination(), _ -> new ArrayList<>()).add(routed.frame());
+        }
+    }
+
+    /**
+     * Resolves and tracks a request, answering it right away if it cannot be
+     * forwarded.
+     *
+     * @return the request renumbered for its target, or {@code null}
+     */
+    private Routed invoke(ChannelHandlerContext ctx, RoutedFrame frame) {
+        long requestId = frame.requestId();
+        String targetClientId = frame.clientId();
 
-        Channel targetClient = SessionRegistry.getClient(targetClientId);
+        Channel targetClient = registry.resolve(targetClientId, frame.routingKey());
+        // Requests that already crossed a peer link are never passed on to another hub
+        if (targetClient == null && !registry.isPeerLink(ctx.channel())) {
+            targetClient = registry.getRemoteClient(targetClientId);
+        }
         if (targetClient == null || !targetClient.isActive()) {
             InvocationResult error = InvocationResult.failure(
-                    request.requestId(),
+                    requestId,
                     new IllegalStateException("Client not available: " + targetClientId)
             );
             ctx.writeAndFlush(Frame.result(error));
-            return;
+            return null;
+        }
+        CallMetrics calls = registry.metrics().calls(RpcMetrics.Side.HUB, targetClientId);
+        if (!backpressure.admit(targetClient)) {
+            OverloadedException overloaded =
+                    new OverloadedException("Too many requests queued for client: " + targetClientId);
+            registry.refused();
+            calls.failed(overloaded);
+            ctx.writeAndFlush(Frame.result(InvocationResult.failure(requestId, overloaded)));
+            log.debug("Refused {} for overloaded client {}", requestId, targetClientId);
+            return null;
         }
 
-        // Track request origin
-        SessionRegistry.trackRequest(request.requestId(), ctx.channel());
+        // Track request origin under an id unique on the target connection
+        long forwardId = registry.trackRequest(targetClient, ctx.channel(), requestId, frame.isStreaming(), calls);
+        if (frame.hasMore()) {
+            registry.trackUpload(ctx.channel(), requestId, targetClient, forwardId);
+        }
 
-        // Forward to target client
-        targetClient.writeAndFlush(Frame.forward(frame.messageId(), request));
-        log.info("Forwarded {} to client {}", request.requestId(), targetClientId);
+        // Forward the untouched payload to the target client, or invoke it through its hub
+        Protocol.MessageType type = registry.isPeerLink(targetClient)
+                ? Protocol.MessageType.INVOKE
+                : Protocol.MessageType.FORWARD;
+        return new Routed(targetClient, frame.retainedAs(type, forwardId));
     }
 
     private void handleRegister(ChannelHandlerContext ctx, Frame frame) {
-        String clientId = frame.asRegistration().clientId();
+        Registration registration = frame.asRegistration();
+        String clientId = registration.clientId();
+        Serializer serializer = Serializers.byName(registration.serializer());
 
         ctx.channel().attr(CLIENT_ID).set(clientId);
-        SessionRegistry.registerClient(clientId, ctx.channel());
+        if (registration.directPort() > 0) {
+            // The client listens on all interfaces; peers reach it where the hub sees it
+            String host = ctx.channel().remoteAddress() instanceof InetSocketAddress address
+                    ? address.getHostString()
+                    : "localhost";
+            ctx.channel().attr(DIRECT_ADDRESS).set(new Lookup(clientId, host, registration.directPort()));
+        }
+        Serializers.bind(ctx.channel(), serializer);
+        registry.registerClient(clientId, registration.group(), ctx.channel());
+
+        String compression = null;
+        if (options.compressionThreshold() > 0 && Compression.DEFLATE.equals(registration.compression())) {
+            Compression.enable(ctx.channel(), options.compressionThreshold());
+            compression = Compression.DEFLATE;
+        }
 
-        ctx.writeAndFlush(Frame.register(clientId));
-        log.info("Client registered: {}", clientId);
+        ctx.writeAndFlush(Frame.register(new Registration(clientId, serializer.name(), compression, 0, registration.group())));
+        log.info("Client registered: {} ({}, compression: {}, group: {})",
+                clientId, serializer.name(), compression, registration.group());
     }
 
-    private void handleResult(Frame frame) {
-        InvocationResult result = frame.asResult();
-        Channel originClient = SessionRegistry.getOriginClient(result.requestId());
+    private void handleLookup(ChannelHandlerContext ctx, Frame frame) {
+        String clientId = frame.asLookup().clientId();
+        Channel target = registry.getClient(clientId);
+        Lookup address = target == null ? null : target.attr(DIRECT_ADDRESS).get();
+        ctx.writeAndFlush(Frame.lookup(frame.messageId(), address != null ? address : Lookup.request(clientId)));
+    }
+
+    private void handleInvalidate(ChannelHandlerContext ctx, Frame frame) {
+        if (ctx.channel().attr(CLIENT_ID).get() == null && !registry.isPeerLink(ctx.channel())) {
+            log.warn("Invalidation from unregistered connection: {}", ctx.channel());
+            return;
+        }
+        registry.broadcast(ctx.channel(), frame);
+        if (log.isDebugEnabled()) {
+            Invalidation invalidation = frame.asInvalidation();
+            log.debug("Passed on invalidation of {}#{} from {}",
+                    invalidation.targetClass(), invalidation.targetMethod(), invalidation.clientId());
+        }
+    }
+
+    private void handlePresence(ChannelHandlerContext ctx, Frame frame) {
+        Presence presence = frame.asPresence();
+        openPeerLink(ctx);
+        registry.applyPresence(ctx.channel(), presence);
+    }
+
+    // Both ends of a link may receive compressed payloads, which pass through unchanged
+    private void openPeerLink(ChannelHandlerContext ctx) {
+        if (options.compressionThreshold() > 0) {
+            Compression.enable(ctx.channel(), options.compressionThreshold());
+        }
+        registry.openPeerLink(ctx.channel());
+    }
+
+    private void handleResult(ChannelHandlerContext ctx, RoutedFrame frame) {
+        Routed result = result(ctx, frame);
+        if (result != null) {
+            result.destination().writeAndFlush(result.frame());
+            if (log.isDebugEnabled()) {
+                log.debug("Returned result for: {}", frame.requestId());
+            }
+        }
+    }
+
+    /**
+     * @return the result renumbered for the caller awaiting it, or {@code null}
+     */
+    private Routed result(ChannelHandlerContext ctx, RoutedFrame frame) {
+        // A chunked result completes with its last chunk
+        RouteTable.Route route = frame.hasMore()
+                ? registry.findRequest(ctx.channel(), frame.requestId())
+                : registry.removeRequest(ctx.channel(), frame.requestId());
+
+        if (route == null || !route.origin().isActive()) {
+            log.warn("Origin client not found for: {}", frame.requestId());
+            return null;
+        }
+        return new Routed(route.origin(), frame.retainedAs(Protocol.MessageType.RESULT, route.requestId()));
+    }
+
+    private void handleStream(ChannelHandlerContext ctx, RoutedFrame frame) {
+        RouteTable.Route route = registry.findRequest(ctx.channel(), frame.requestId());
 
-        if (originClient == null || !originClient.isActive()) {
-            log.warn("Origin client not found for: {}", result.requestId());
+        if (route == null || !route.origin().isActive()) {
+            // Cancelled or orphaned: make sure the target stops
+            log.debug("No stream for: {}", frame.requestId());
+            ctx.writeAndFlush(Frame.credit(frame.requestId(), Credit.cancel()));
             return;
         }
 
-        originClient.writeAndFlush(frame);
-        SessionRegistry.removeRequest(result.requestId());
+        route.origin().writeAndFlush(frame.retainedAs(Protocol.MessageType.STREAM, route.requestId()));
+    }
+
+    private void handleCredit(ChannelHandlerContext ctx, RoutedFrame frame) {
+        ByteBuf content = frame.content();
+        boolean cancel = content.getLong(content.readerIndex()) < 0;
+        SessionRegistry.TargetRoute stream = cancel
+                ? registry.cancelStream(ctx.channel(), frame.requestId())
+                : registry.getStream(ctx.channel(), frame.requestId());
+
+        if (stream == null || !stream.target().isActive()) {
+            log.debug("No stream for credit: {}", frame.requestId());
+            return;
+        }
+
+        stream.target().writeAndFlush(frame.retainedAs(Protocol.MessageType.CREDIT, stream.requestId()));
+    }
+
+    // Passes a chunk on as soon as it arrives; the hub never holds a whole message
+    private void handleChunk(ChannelHandlerContext ctx, RoutedFrame frame) {
+        long requestId = frame.requestId();
+        boolean last = !frame.hasMore();
+        switch (frame.chunkOf()) {
+            case INVOKE -> {
+                SessionRegistry.TargetRoute upload = registry.upload(ctx.channel(), requestId, last);
+                if (upload == null || !upload.target().isActive()) {
+                    log.debug("No request for chunk: {}", requestId);
+                    return;
+                }
+                Protocol.MessageType type = registry.isPeerLink(upload.target())
+                        ? Protocol.MessageType.INVOKE
+                        : Protocol.MessageType.FORWARD;
+                backpressure.forward(ctx.channel(), upload.target(), frame.retainedChunk(type, upload.requestId()));
+            }
+            case RESULT, STREAM -> {
+                RouteTable.Route route = last && frame.chunkOf() == Protocol.MessageType.RESULT
+                        ? registry.removeRequest(ctx.channel(), requestId)
+                        : registry.findRequest(ctx.channel(), requestId);
+                if (route == null || !route.origin().isActive()) {
+                    log.debug("No origin for chunk: {}", requestId);
+                    return;
+                }
+                route.origin().writeAndFlush(frame.retainedChunk(frame.chunkOf(), route.requestId()));
+            }
+            default -> log.warn("Unexpected chunk of {}", frame.chunkOf());
+        }
+    }
 
-        log.info("Returned result for: {}", result.requestId());
+    // A frame on its way to the connection it was routed to
+    private record Routed(Channel destination, RoutedFrame frame) {
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         String clientId = ctx.channel().attr(CLIENT_ID).get();
         if (clientId != null) {
-            SessionRegistry.unregisterClient(clientId);
+            registry.unregisterClient(clientId, ctx.channel());
             log.info("Client disconnected: {}", clientId);
         }
         ctx.fireChannelInactive();
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable()) {
+            Backpressure.resume(ctx.channel());
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         log.error("Exception in handler", cause);
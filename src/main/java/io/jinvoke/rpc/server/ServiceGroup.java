@@ -0,0 +1,172 @@
+package io.jinvoke.rpc.server;
+
+import io.jinvoke.rpc.transport.TransportOptions.GroupBalancing;
+import io.netty.channel.Channel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Client instances registered under one service group name. Callers address the
+ * group like a client and the hub picks an instance per request: by consistent
+ * hashing when the request carries a routing key, otherwise by the configured
+ * {@link GroupBalancing} over the instances' outstanding requests, ties going to
+ * the instance with the lower measured round-trip time.
+ * <p>
+ * Membership is copy-on-write; every change rebuilds the hash ring, which places
+ * {@link #VIRTUAL_NODES} points per instance so keys move only off or onto the
+ * instance that left or joined.
+ */
+final class ServiceGroup {
+    private static final int VIRTUAL_NODES = 128;
+    private static final ClientSession[] NONE = new ClientSession[0];
+
+    private final String name;
+    private volatile ClientSession[] members = NONE;
+    private volatile Ring ring = new Ring(new long[0], NONE);
+
+    // Sorted points of the hash ring and the member owning each
+    private record Ring(long[] points, ClientSession[] owners) {
+    }
+
+    ServiceGroup(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    synchronized void add(ClientSession member) {
+        ClientSession[] current = members;
+        ClientSession[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = member;
+        members = added;
+        ring = ring(added);
+    }
+
+    synchronized void remove(ClientSession member) {
+        ClientSession[] remaining = Arrays.stream(members).filter(m -> m != member).toArray(ClientSession[]::new);
+        members = remaining;
+        ring = ring(remaining);
+    }
+
+    boolean isEmpty() {
+        return members.length == 0;
+    }
+
+    int size() {
+        return members.length;
+    }
+
+    /**
+     * @return an active connection of the member chosen for a request, or
+     * {@code null} if no member is reachable
+     */
+    Channel select(String routingKey, GroupBalancing balancing) {
+        ClientSession[] current = members;
+        if (current.length == 0) {
+            return null;
+        }
+        if (routingKey != null) {
+            return byKey(routingKey);
+        }
+        return switch (balancing) {
+            case LEAST_OUTSTANDING -> leastOutstanding(current);
+            case POWER_OF_TWO_CHOICES -> powerOfTwoChoices(current);
+        };
+    }
+
+    private Channel byKey(String routingKey) {
+        Ring current = ring;
+        int start = Arrays.binarySearch(current.points(), hash(routingKey));
+        if (start < 0) {
+            start = -start - 1;
+        }
+        // Walk clockwise past members that have no active connection left
+        int points = current.points().length;
+        for (int i = 0; i < points; i++) {
+            Channel channel = current.owners()[(start + i) % points].select();
+            if (channel != null) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private static Channel leastOutstanding(ClientSession[] current) {
+        Channel best = null;
+        ClientSession bestMember = null;
+        int fewest = Integer.MAX_VALUE;
+        for (ClientSession member : current) {
+            int outstanding = member.outstanding();
+            if (outstanding < fewest || bestMember != null && outstanding == fewest && member.closerThan(bestMember)) {
+                Channel channel = member.select();
+                if (channel != null) {
+                    best = channel;
+                    bestMember = member;
+                    fewest = outstanding;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static Channel powerOfTwoChoices(ClientSession[] current) {
+        if (current.length == 1) {
+            return current[0].select();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(current.length);
+        int second = random.nextInt(current.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        ClientSession a = current[first];
+        ClientSession b = current[second];
+        int outstandingA = a.outstanding();
+        int outstandingB = b.outstanding();
+        ClientSession preferred = outstandingA < outstandingB
+                || outstandingA == outstandingB && !b.closerThan(a) ? a : b;
+        Channel channel = preferred.select();
+        if (channel == null) {
+            channel = (preferred == a ? b : a).select();
+        }
+        return channel != null ? channel : leastOutstanding(current);
+    }
+
+    private static Ring ring(ClientSession[] members) {
+        long[] points = new long[members.length * VIRTUAL_NODES];
+        ClientSession[] owners = new ClientSession[points.length];
+        record Point(long hash, ClientSession owner) {
+        }
+        Point[] sorted = new Point[points.length];
+        for (int m = 0; m < members.length; m++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                sorted[m * VIRTUAL_NODES + v] = new Point(hash(members[m].clientId() + '#' + v), members[m]);
+            }
+        }
+        Arrays.sort(sorted, (x, y) -> Long.compare(x.hash(), y.hash()));
+        for (int i = 0; i < sorted.length; i++) {
+            points[i] = sorted[i].hash();
+            owners[i] = sorted[i].owner();
+        }
+        return new Ring(points, owners);
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with the murmur3 mixer for spread
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
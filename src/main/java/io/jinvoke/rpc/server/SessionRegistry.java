@@ -1,72 +1,686 @@
 package io.jinvoke.rpc.server;
 
+import io.jinvoke.rpc.codec.RoutedFrame;
+import io.jinvoke.rpc.metrics.CallMetrics;
+import io.jinvoke.rpc.metrics.RpcMetrics;
+import io.jinvoke.rpc.protocol.Credit;
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.InvocationResult;
+import io.jinvoke.rpc.protocol.Presence;
+import io.jinvoke.rpc.protocol.Protocol;
+import io.jinvoke.rpc.transport.LivenessHandler;
+import io.jinvoke.rpc.transport.TransportOptions.GroupBalancing;
+import io.jinvoke.rpc.util.PendingTable;
 import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
- * Registry for tracking active client sessions and pending requests
+ * Registry of one hub: its client sessions, the service groups they form, the
+ * requests in flight to them, and the clients that federated peer hubs announced.
+ * <p>
+ * A name a request targets resolves to a client first and to a service group
+ * otherwise; peer hubs learn both. The registry counts the requests outstanding
+ * per client, which is what group balancing runs on, and reports them along with
+ * the time targets take to answer through its {@link RpcMetrics}.
+ * <p>
+ * Peer hubs are linked over ordinary hub connections. Each side announces only its
+ * own clients, so hubs are expected to form a full mesh; a request is never routed
+ * across more than one peer link.
  */
 public final class SessionRegistry {
     private static final Logger log = LoggerFactory.getLogger(SessionRegistry.class);
 
-    // clientId -> client channel
-    private static final Map<String, Channel> CLIENTS = new ConcurrentHashMap<>();
+    // target channel -> requests forwarded to it, keyed by hub-assigned id
+    private static final AttributeKey<RouteTable> ROUTES = AttributeKey.valueOf("routes");
 
-    // requestId -> origin client channel (who initiated the request)
-    private static final Map<String, Channel> REQUEST_ORIGINS = new ConcurrentHashMap<>();
+    // peer link -> id of the hub at the other end
+    private static final AttributeKey<String> PEER_HUB = AttributeKey.valueOf("peerHub");
 
-    private SessionRegistry() {
+    // client channel -> session it belongs to
+    private static final AttributeKey<ClientSession> SESSION = AttributeKey.valueOf("session");
+
+    // origin channel -> streams it opened, keyed by its own request id
+    private static final AttributeKey<PendingTable<TargetRoute>> STREAMS = AttributeKey.valueOf("streams");
+
+    // origin channel -> chunked requests it is still sending, keyed by its own request id
+    private static final AttributeKey<PendingTable<TargetRoute>> UPLOADS = AttributeKey.valueOf("uploads");
+
+    private final String hubId;
+    private final Timer timer;
+    private final long requestTimeoutNanos;
+    private final GroupBalancing groupBalancing;
+
+    // clientId -> connections of that client
+    private final Map<String, ClientSession> clients = new ConcurrentHashMap<>();
+
+    // group name -> client instances serving it
+    private final Map<String, ServiceGroup> groups = new ConcurrentHashMap<>();
+
+    // clientId -> links to the peer hub it is connected to, latest announcement last;
+    // two hubs that both dial each other are joined by two links
+    private final Map<String, List<Channel>> remoteClients = new ConcurrentHashMap<>();
+
+    // links that receive presence updates of the local clients
+    private final Set<Channel> peerLinks = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final RpcMetrics metrics = new RpcMetrics();
+
+    /**
+     * The target connection of a request and the id the hub gave it there. The
+     * credits of a stream and the chunks of a large request travel this way.
+     */
+    public record TargetRoute(Channel target, long requestId) {
+    }
+
+    public SessionRegistry(String hubId, Timer timer, long requestTimeoutNanos) {
+        this(hubId, timer, requestTimeoutNanos, GroupBalancing.LEAST_OUTSTANDING);
+    }
+
+    public SessionRegistry(String hubId, Timer timer, long requestTimeoutNanos, GroupBalancing groupBalancing) {
+        this.hubId = hubId;
+        this.timer = timer;
+        this.requestTimeoutNanos = requestTimeoutNanos;
+        this.groupBalancing = groupBalancing;
     }
 
-    public static void registerClient(String clientId, Channel channel) {
-        CLIENTS.put(clientId, channel);
-        channel.closeFuture().addListener(f -> unregisterClient(clientId));
+    public String hubId() {
+        return hubId;
+    }
+
+    /**
+     * Adds {@code channel} to the session of {@code clientId}, announcing the client
+     * to peer hubs when it is its first connection. Requests forwarded to the channel
+     * expire after the request timeout and are failed as soon as it closes.
+     */
+    public void registerClient(String clientId, Channel channel) {
+        registerClient(clientId, null, channel);
+    }
+
+    /**
+     * Same as {@link #registerClient(String, Channel)}, also making the client an
+     * instance of service {@code group} unless that is {@code null}. The group
+     * is fixed by the client's first connection.
+     */
+    public void registerClient(String clientId, String group, Channel channel) {
+        trackRoutes(channel, "Client disconnected: " + clientId);
+        ClientSession[] joined = {null};
+        ClientSession session = clients.compute(clientId, (_, existing) -> {
+            if (existing == null) {
+                existing = new ClientSession(clientId, group);
+                joined[0] = existing;
+                metrics.inFlight(clientId, existing::outstanding);
+                metrics.roundTrip(clientId, existing::roundTripNanos);
+            }
+            existing.add(channel);
+            return existing;
+        });
+        channel.attr(SESSION).set(session);
+        channel.closeFuture().addListener(f -> unregisterClient(clientId, channel));
+        if (joined[0] != null) {
+            announce(Presence.joined(hubId, clientId));
+            if (group != null) {
+                joinGroup(group, joined[0]);
+            }
+        }
         log.debug("Client registered: {}", clientId);
     }
 
-    public static void unregisterClient(String clientId) {
-        CLIENTS.remove(clientId);
-        log.debug("Client unregistered: {}", clientId);
+    /**
+     * Removes {@code channel} from the session of {@code clientId}; the client is
+     * gone once its last connection is.
+     */
+    public void unregisterClient(String clientId, Channel channel) {
+        ClientSession[] left = {null};
+        clients.computeIfPresent(clientId, (_, session) -> {
+            if (session.remove(channel) && session.isEmpty()) {
+                left[0] = session;
+                metrics.removeInFlight(clientId);
+                return null;
+            }
+            return session;
+        });
+        if (left[0] != null) {
+            announce(Presence.left(hubId, clientId));
+            if (left[0].group() != null) {
+                leaveGroup(left[0].group(), left[0]);
+            }
+            forgetCalls(clientId);
+            log.debug("Client unregistered: {}", clientId);
+        }
+    }
+
+    /**
+     * @return the next active local connection of {@code clientId}, or {@code null}
+     */
+    public Channel getClient(String clientId) {
+        ClientSession session = clients.get(clientId);
+        return session == null ? null : session.select();
+    }
+
+    /**
+     * Resolves the target of a request: the client named {@code name}, otherwise
+     * the member of service group {@code name} chosen for {@code routingKey}.
+     *
+     * @return an active local connection, or {@code null}
+     */
+    public Channel resolve(String name, String routingKey) {
+        ClientSession session = clients.get(name);
+        if (session != null) {
+            return session.select();
+        }
+        ServiceGroup group = groups.get(name);
+        return group == null ? null : group.select(routingKey, groupBalancing);
+    }
+
+    /**
+     * @return the link to the peer hub {@code clientId} is connected to, or {@code null}
+     */
+    public Channel getRemoteClient(String clientId) {
+        List<Channel> links = remoteClients.get(clientId);
+        if (links == null) {
+            return null;
+        }
+        for (int i = links.size() - 1; i >= 0; i--) {
+            if (links.get(i).isActive()) {
+                return links.get(i);
+            }
+        }
+        return null;
+    }
+
+    public boolean isClientActive(String clientId) {
+        return getClient(clientId) != null;
     }
 
-    public static Channel getClient(String clientId) {
-        return CLIENTS.get(clientId);
+    /**
+     * Starts announcing local clients over {@code link}, beginning with a snapshot.
+     * Called once per link by whichever side speaks first.
+     */
+    public void openPeerLink(Channel link) {
+        if (!peerLinks.add(link)) {
+            return;
+        }
+        trackRoutes(link, "Peer hub disconnected");
+        link.closeFuture().addListener(f -> closePeerLink(link));
+        // Added to peerLinks first, so no join can fall between snapshot and deltas
+        Set<String> names = new HashSet<>(clients.keySet());
+        names.addAll(groups.keySet());
+        link.writeAndFlush(Frame.presence(Presence.snapshot(hubId, names)));
     }
 
-    public static boolean isClientActive(String clientId) {
-        Channel ch = CLIENTS.get(clientId);
-        return ch != null && ch.isActive();
+    /**
+     * Passes {@code frame} on to one connection of every local client other than
+     * the one it came from, and to the peer hubs unless it came from one of them.
+     */
+    public void broadcast(Channel origin, Frame frame) {
+        ClientSession sender = origin.attr(SESSION).get();
+        for (ClientSession session : clients.values()) {
+            Channel channel = session == sender ? null : session.select();
+            if (channel != null) {
+                channel.writeAndFlush(frame);
+            }
+        }
+        if (!isPeerLink(origin)) {
+            // Once per peer hub, however many links lead to it
+            Set<String> reached = new HashSet<>();
+            for (Channel link : peerLinks) {
+                String peer = link.attr(PEER_HUB).get();
+                if (peer == null || reached.add(peer)) {
+                    link.writeAndFlush(frame);
+                }
+            }
+        }
     }
 
-    public static void trackRequest(String requestId, Channel originClient) {
-        REQUEST_ORIGINS.put(requestId, originClient);
-        log.debug("Tracking request: {}", requestId);
+    public boolean isPeerLink(Channel channel) {
+        return peerLinks.contains(channel);
     }
 
-    public static Channel getOriginClient(String requestId) {
-        return REQUEST_ORIGINS.get(requestId);
+    /**
+     * Applies clients announced by the peer hub at the other end of {@code link}.
+     */
+    public void applyPresence(Channel link, Presence presence) {
+        link.attr(PEER_HUB).set(presence.hubId());
+        if (presence.snapshot()) {
+            Set<String> announced = new HashSet<>(presence.added());
+            forgetRemoteClients(link, clientId -> !announced.contains(clientId));
+        }
+        presence.removed().forEach(clientId -> forgetRemoteClient(clientId, link));
+        presence.added().forEach(clientId -> remoteClients.compute(clientId, (_, links) -> {
+            List<Channel> updated = links == null ? new ArrayList<>() : new ArrayList<>(links);
+            updated.remove(link);
+            updated.add(link);
+            return List.copyOf(updated);
+        }));
+        log.debug("Presence from hub {}: +{} -{}", presence.hubId(), presence.added(), presence.removed());
     }
 
-    public static void removeRequest(String requestId) {
-        REQUEST_ORIGINS.remove(requestId);
-        log.debug("Removed request: {}", requestId);
+    /**
+     * Records a request forwarded to {@code target} and returns the id it carries
+     * on that connection.
+     */
+    public long trackRequest(Channel target, Channel originClient, long originRequestId) {
+        return trackRequest(target, originClient, originRequestId, false);
     }
 
-    public static int clientCount() {
-        return CLIENTS.size();
+    /**
+     * Same as {@link #trackRequest(Channel, Channel, long)}; a {@code streaming}
+     * request is also remembered on the origin side, so its credits can be
+     * passed to {@code target}, and is cancelled there if the origin disconnects.
+     */
+    public long trackRequest(Channel target, Channel originClient, long originRequestId, boolean streaming) {
+        return trackRequest(target, originClient, originRequestId, streaming, null);
     }
 
-    public static int pendingRequestCount() {
-        return REQUEST_ORIGINS.size();
+    /**
+     * Same as {@link #trackRequest(Channel, Channel, long, boolean)}, recording the
+     * time until the request is answered, fails or expires in {@code calls}
+     * unless that is {@code null}.
+     */
+    public long trackRequest(Channel target, Channel originClient, long originRequestId, boolean streaming,
+                             CallMetrics calls) {
+        RouteTable table = target.attr(ROUTES).get();
+        if (table == null) {
+            throw new IllegalStateException("Target not registered: " + target);
+        }
+        long id = table.track(originClient, originRequestId, streaming, calls);
+        if (streaming) {
+            streams(originClient).put(originRequestId, new TargetRoute(target, id));
+        }
+        ClientSession session = target.attr(SESSION).get();
+        if (session != null) {
+            session.started();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Tracking request: {} as {}", originRequestId, id);
+        }
+        return id;
     }
 
-    public static void clear() {
-        REQUEST_ORIGINS.clear();
-        CLIENTS.clear();
+    /**
+     * Removes the request answered by {@code target} under {@code requestId}.
+     *
+     * @return the origin channel and its request id, or {@code null} if unknown
+     */
+    public RouteTable.Route removeRequest(Channel target, long requestId) {
+        RouteTable table = target.attr(ROUTES).get();
+        RouteTable.Route route = table == null ? null : table.remove(requestId);
+        if (route != null) {
+            finished(target, 1);
+            route.finished(null);
+            if (route.streaming()) {
+                forgetStream(route);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Removed request: {}", requestId);
+        }
+        return route;
+    }
+
+    /**
+     * Looks up the request {@code target} answers under {@code requestId}, leaving
+     * it open: for stream elements and all but the last chunk of a result.
+     *
+     * @return the origin channel and its request id, or {@code null} if unknown
+     */
+    public RouteTable.Route findRequest(Channel target, long requestId) {
+        RouteTable table = target.attr(ROUTES).get();
+        return table == null ? null : table.get(requestId);
+    }
+
+    /**
+     * @return where the stream {@code origin} opened as {@code requestId} comes
+     * from, or {@code null} if it is over
+     */
+    public TargetRoute getStream(Channel origin, long requestId) {
+        PendingTable<TargetRoute> streams = origin.attr(STREAMS).get();
+        return streams == null ? null : streams.get(requestId);
+    }
+
+    /**
+     * Forgets the stream {@code origin} cancelled; elements still on their way
+     * are dropped.
+     *
+     * @return where the stream came from, to pass the cancel on; {@code null} if it is over
+     */
+    public TargetRoute cancelStream(Channel origin, long requestId) {
+        PendingTable<TargetRoute> streams = origin.attr(STREAMS).get();
+        TargetRoute stream = streams == null ? null : streams.remove(requestId);
+        if (stream != null) {
+            RouteTable.Route route = removeRoute(stream);
+            if (route != null) {
+                route.finished(null);
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Remembers where the chunks that follow the request {@code origin} sent as
+     * {@code requestId} go. An upload the origin leaves unfinished by
+     * disconnecting is aborted at the target.
+     */
+    public void trackUpload(Channel origin, long requestId, Channel target, long forwardId) {
+        PendingTable<TargetRoute> uploads = origin.attr(UPLOADS).get();
+        if (uploads == null) {
+            PendingTable<TargetRoute> created = new PendingTable<>();
+            uploads = origin.attr(UPLOADS).setIfAbsent(created);
+            if (uploads == null) {
+                uploads = created;
+                origin.closeFuture().addListener(f -> abortUploads(origin));
+            }
+        }
+        uploads.put(requestId, new TargetRoute(target, forwardId));
+    }
+
+    /**
+     * @param last whether this chunk completes the request, ending the upload
+     * @return where a chunk of the request {@code origin} sent as {@code requestId}
+     * goes, or {@code null} if it was not passed on
+     */
+    public TargetRoute upload(Channel origin, long requestId, boolean last) {
+        PendingTable<TargetRoute> uploads = origin.attr(UPLOADS).get();
+        if (uploads == null) {
+            return null;
+        }
+        return last ? uploads.remove(requestId) : uploads.get(requestId);
+    }
+
+    public int clientCount() {
+        return clients.size();
+    }
+
+    public int groupCount() {
+        return groups.size();
+    }
+
+    /**
+     * @return instances registered in service {@code group}
+     */
+    public int groupSize(String group) {
+        ServiceGroup serviceGroup = groups.get(group);
+        return serviceGroup == null ? 0 : serviceGroup.size();
+    }
+
+    /**
+     * @return requests forwarded to {@code clientId} and not answered yet
+     */
+    public int outstandingRequestCount(String clientId) {
+        ClientSession session = clients.get(clientId);
+        return session == null ? 0 : session.outstanding();
+    }
+
+    /**
+     * @return the smoothed round-trip time to {@code clientId} in nanoseconds, over
+     * its fastest connection or, for a client of a peer hub, the link to that hub;
+     * {@code -1} while unmeasured or for an unknown client
+     */
+    public long roundTripNanos(String clientId) {
+        ClientSession session = clients.get(clientId);
+        if (session != null) {
+            return session.roundTripNanos();
+        }
+        Channel link = getRemoteClient(clientId);
+        return link == null ? -1 : LivenessHandler.roundTripNanos(link);
+    }
+
+    public int remoteClientCount() {
+        return remoteClients.size();
+    }
+
+    int peerLinkCount() {
+        return peerLinks.size();
+    }
+
+    public int pendingRequestCount() {
+        int count = 0;
+        for (ClientSession session : clients.values()) {
+            for (Channel channel : session.channels()) {
+                count += pendingRequestCount(channel);
+            }
+        }
+        for (Channel link : peerLinks) {
+            count += pendingRequestCount(link);
+        }
+        return count;
+    }
+
+    /**
+     * @return requests failed because their target did not answer in time
+     */
+    public long expiredRequestCount() {
+        return expired.sum();
+    }
+
+    /**
+     * @return requests failed because their target disconnected before answering
+     */
+    public long abandonedRequestCount() {
+        return abandoned.sum();
+    }
+
+    /**
+     * @return requests refused because their target had too many queued
+     */
+    public long refusedRequestCount() {
+        return refused.sum();
+    }
+
+    void refused() {
+        refused.increment();
+    }
+
+    /**
+     * @return latencies per target name and requests outstanding per client
+     */
+    public RpcMetrics metrics() {
+        return metrics;
+    }
+
+    public void clear() {
+        clients.clear();
+        groups.clear();
+        remoteClients.clear();
+        peerLinks.clear();
         log.info("Registry cleared");
     }
+
+    private void trackRoutes(Channel channel, String closeReason) {
+        RouteTable created = new RouteTable(timer, requestTimeoutNanos, route -> expire(channel, route));
+        if (channel.attr(ROUTES).setIfAbsent(created) == null) {
+            channel.closeFuture().addListener(f -> abandon(channel, closeReason));
+        }
+    }
+
+    private PendingTable<TargetRoute> streams(Channel origin) {
+        PendingTable<TargetRoute> streams = origin.attr(STREAMS).get();
+        if (streams == null) {
+            PendingTable<TargetRoute> created = new PendingTable<>();
+            streams = origin.attr(STREAMS).setIfAbsent(created);
+            if (streams == null) {
+                streams = created;
+                origin.closeFuture().addListener(f -> cancelStreams(origin));
+            }
+        }
+        return streams;
+    }
+
+    private static void forgetStream(RouteTable.Route route) {
+        PendingTable<TargetRoute> streams = route.origin().attr(STREAMS).get();
+        if (streams != null) {
+            streams.remove(route.requestId());
+        }
+    }
+
+    // The origin is gone: stop every target still streaming to it
+    private void cancelStreams(Channel origin) {
+        for (TargetRoute stream : origin.attr(STREAMS).get().removeAll()) {
+            RouteTable.Route route = removeRoute(stream);
+            if (route != null) {
+                route.finished(null);
+                stream.target().writeAndFlush(Frame.credit(stream.requestId(), Credit.cancel()));
+            }
+        }
+    }
+
+    // The origin is gone halfway through sending requests: drop them at their targets
+    private void abortUploads(Channel origin) {
+        IllegalStateException cause = new IllegalStateException("Caller disconnected during upload");
+        for (TargetRoute upload : origin.attr(UPLOADS).get().removeAll()) {
+            RouteTable.Route route = removeRoute(upload);
+            if (route != null) {
+                route.finished(cause);
+            }
+            Protocol.MessageType type = isPeerLink(upload.target())
+                    ? Protocol.MessageType.INVOKE
+                    : Protocol.MessageType.FORWARD;
+            upload.target().writeAndFlush(RoutedFrame.abort(type, upload.requestId()));
+        }
+    }
+
+    private void joinGroup(String name, ClientSession member) {
+        boolean[] created = {false};
+        groups.compute(name, (_, group) -> {
+            if (group == null) {
+                group = new ServiceGroup(name);
+                created[0] = true;
+            }
+            group.add(member);
+            return group;
+        });
+        if (created[0]) {
+            announce(Presence.joined(hubId, name));
+        }
+        log.debug("Client {} joined group {}", member.clientId(), name);
+    }
+
+    private void leaveGroup(String name, ClientSession member) {
+        boolean[] emptied = {false};
+        groups.computeIfPresent(name, (_, group) -> {
+            group.remove(member);
+            if (group.isEmpty()) {
+                emptied[0] = true;
+                return null;
+            }
+            return group;
+        });
+        if (emptied[0]) {
+            announce(Presence.left(hubId, name));
+            forgetCalls(name);
+        }
+        log.debug("Client {} left group {}", member.clientId(), name);
+    }
+
+    // Takes the route of a stream or upload off its target, if it is still there
+    private static RouteTable.Route removeRoute(TargetRoute target) {
+        RouteTable table = target.target().attr(ROUTES).get();
+        RouteTable.Route route = table == null ? null : table.remove(target.requestId());
+        if (route != null) {
+            finished(target.target(), 1);
+        }
+        return route;
+    }
+
+    private void forgetRemoteClients(Channel link, Predicate<String> which) {
+        for (Map.Entry<String, List<Channel>> entry : remoteClients.entrySet()) {
+            if (entry.getValue().contains(link) && which.test(entry.getKey())) {
+                forgetRemoteClient(entry.getKey(), link);
+            }
+        }
+    }
+
+    // A client still announced over another link to its hub stays reachable
+    private void forgetRemoteClient(String clientId, Channel link) {
+        List<Channel> remaining = remoteClients.computeIfPresent(clientId, (_, links) -> {
+            if (!links.contains(link)) {
+                return links;
+            }
+            List<Channel> updated = new ArrayList<>(links);
+            updated.remove(link);
+            return updated.isEmpty() ? null : List.copyOf(updated);
+        });
+        if (remaining == null) {
+            forgetCalls(clientId);
+        }
+    }
+
+    // Drops the call metrics of a name no client, group or peer hub answers to any more
+    private void forgetCalls(String name) {
+        if (!clients.containsKey(name) && !groups.containsKey(name) && !remoteClients.containsKey(name)) {
+            metrics.removeCalls(RpcMetrics.Side.HUB, name);
+        }
+    }
+
+    private static void finished(Channel target, int requests) {
+        ClientSession session = target.attr(SESSION).get();
+        if (session != null) {
+            session.finished(requests);
+        }
+    }
+
+    private void closePeerLink(Channel link) {
+        peerLinks.remove(link);
+        forgetRemoteClients(link, _ -> true);
+        log.info("Peer link to hub {} closed", link.attr(PEER_HUB).get());
+    }
+
+    private void announce(Presence presence) {
+        for (Channel link : peerLinks) {
+            link.writeAndFlush(Frame.presence(presence));
+        }
+    }
+
+    private static int pendingRequestCount(Channel channel) {
+        RouteTable table = channel.attr(ROUTES).get();
+        return table == null ? 0 : table.size();
+    }
+
+    private void expire(Channel target, RouteTable.Route route) {
+        finished(target, 1);
+        expired.increment();
+        log.debug("Request expired: {}", route.requestId());
+        TimeoutException cause = new TimeoutException("Request expired at hub without a result");
+        route.finished(cause);
+        fail(route, cause);
+    }
+
+    private void abandon(Channel target, String reason) {
+        List<RouteTable.Route> routes = target.attr(ROUTES).get().removeAll();
+        if (routes.isEmpty()) {
+            return;
+        }
+        finished(target, routes.size());
+        routes.stream().filter(RouteTable.Route::streaming).forEach(SessionRegistry::forgetStream);
+        abandoned.add(routes.size());
+        log.debug("Failing {} requests: {}", routes.size(), reason);
+        IllegalStateException cause = new IllegalStateException(reason);
+        routes.forEach(route -> {
+            route.finished(cause);
+            fail(route, cause);
+        });
+    }
+
+    private static void fail(RouteTable.Route route, Throwable cause) {
+        Channel origin = route.origin();
+        if (origin.isActive()) {
+            origin.writeAndFlush(Frame.result(InvocationResult.failure(route.requestId(), cause)));
+        }
+    }
 }
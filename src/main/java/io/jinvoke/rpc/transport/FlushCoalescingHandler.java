@@ -0,0 +1,122 @@
+package io.jinvoke.rpc.transport;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns bursts of flushes into one, so that frames written in the same event-loop
+ * tick leave in a single gathering write.
+ * <p>
+ * A flush is passed on immediately once {@code maxBatch} flushes are pending.
+ * Otherwise it is deferred to the end of the current read, or to a task that runs
+ * after the writes already queued on the event loop ({@code maxDelayNanos == 0}),
+ * or at most {@code maxDelayNanos} later.
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final Runnable flushTask;
+
+    private ChannelHandlerContext ctx;
+    private int pendingFlushes;
+    private boolean readInProgress;
+    private Future<?> scheduled;
+
+    public FlushCoalescingHandler(int maxBatch, long maxDelayNanos) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        if (maxDelayNanos < 0) {
+            throw new IllegalArgumentException("maxDelayNanos must not be negative: " + maxDelayNanos);
+        }
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelayNanos;
+        this.flushTask = () -> {
+            scheduled = null;
+            if (pendingFlushes > 0 && !readInProgress) {
+                flushNow(ctx);
+            }
+        };
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (++pendingFlushes >= maxBatch) {
+            flushNow(ctx);
+        } else if (!readInProgress && scheduled == null) {
+            scheduled = maxDelayNanos == 0
+                    ? ctx.executor().submit(flushTask)
+                    : ctx.executor().schedule(flushTask, maxDelayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        if (pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable() && pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        flushIfPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfPending(ctx);
+    }
+
+    private void flushIfPending(ChannelHandlerContext ctx) {
+        if (pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        pendingFlushes = 0;
+        ctx.flush();
+    }
+}
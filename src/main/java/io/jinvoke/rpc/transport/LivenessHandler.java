@@ -0,0 +1,115 @@
+package io.jinvoke.rpc.transport;
+
+import io.jinvoke.rpc.protocol.Frame;
+import io.jinvoke.rpc.protocol.Protocol;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells a dead peer from a quiet one. Once nothing was read from the connection
+ * for the idle time, a PING goes out carrying the time it was sent; the peer
+ * answers with a PONG echoing it, which measures the round-trip time. A PONG is
+ * never answered, so an idle connection carries one exchange per idle time and
+ * a busy one none at all. After {@code maxMissedPings} pings in a row without
+ * anything read in between the connection is closed, which drops the peer like
+ * any other disconnect.
+ * <p>
+ * While reading is paused ({@code autoRead} off, as the hub's backpressure does to
+ * callers feeding a slow target) silence says nothing about the peer: no pings go
+ * out and none count as missed, so the count starts afresh once reads resume.
+ * <p>
+ * Sits behind the frame codec and puts an {@link IdleStateHandler} in front of
+ * itself. PING and PONG frames stop here. With an idle time of {@code 0} it only
+ * answers the peer's pings, so turning the checks off on one end never gets it
+ * dropped by the other.
+ */
+public class LivenessHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger log = LoggerFactory.getLogger(LivenessHandler.class);
+
+    // smoothed round-trip time in nanoseconds, once a PONG arrived
+    private static final AttributeKey<Long> ROUND_TRIP = AttributeKey.valueOf("roundTrip");
+
+    private final long idleNanos;
+    private final int maxMissedPings;
+
+    private int missedPings;
+
+    /**
+     * @param idleNanos read idleness before a ping, or {@code 0} to send none
+     */
+    public LivenessHandler(long idleNanos, int maxMissedPings) {
+        if (idleNanos < 0) {
+            throw new IllegalArgumentException("idleNanos must not be negative: " + idleNanos);
+        }
+        if (maxMissedPings < 1) {
+            throw new IllegalArgumentException("maxMissedPings must be positive: " + maxMissedPings);
+        }
+        this.idleNanos = idleNanos;
+        this.maxMissedPings = maxMissedPings;
+    }
+
+    /**
+     * @return the smoothed round-trip time of {@code channel} in nanoseconds, or
+     * {@code -1} before its first PONG
+     */
+    public static long roundTripNanos(Channel channel) {
+        Long roundTrip = channel.attr(ROUND_TRIP).get();
+        return roundTrip == null ? -1 : roundTrip;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        if (idleNanos > 0) {
+            ctx.pipeline().addBefore(ctx.name(), null, new IdleStateHandler(idleNanos, 0, 0, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        missedPings = 0;
+        if (msg instanceof Frame frame && frame.type() == Protocol.MessageType.PING) {
+            ctx.writeAndFlush(Frame.pong(frame.messageId()));
+        } else if (msg instanceof Frame frame && frame.type() == Protocol.MessageType.PONG) {
+            sample(ctx.channel(), System.nanoTime() - frame.messageId());
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+        if (!(evt instanceof IdleStateEvent idle) || idle.state() != IdleState.READER_IDLE) {
+            ctx.fireUserEventTriggered(evt);
+            return;
+        }
+        if (!ctx.channel().config().isAutoRead()) {
+            missedPings = 0;
+            return;
+        }
+        if (missedPings >= maxMissedPings) {
+            log.warn("No answer from {} to {} pings, closing", ctx.channel().remoteAddress(), missedPings);
+            ctx.close();
+            return;
+        }
+        missedPings++;
+        ctx.writeAndFlush(Frame.ping(System.nanoTime()));
+    }
+
+    // Weighs each sample in by an eighth, as TCP smooths its round-trip time
+    private static void sample(Channel channel, long roundTrip) {
+        if (roundTrip < 0) {
+            return;
+        }
+        Long smoothed = channel.attr(ROUND_TRIP).get();
+        channel.attr(ROUND_TRIP).set(smoothed == null ? roundTrip : smoothed + (roundTrip - smoothed) / 8);
+    }
+}
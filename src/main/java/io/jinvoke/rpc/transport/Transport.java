@@ -0,0 +1,110 @@
+package io.jinvoke.rpc.transport;
+
+import io.netty.channel.Channel;
+import io.netty.channel.IoHandlerFactory;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalIoHandler;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+import io.netty.channel.uring.IoUringSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Netty I/O transport. Native transports are only used where the platform
+ * supports them; otherwise {@link #resolve()} falls back towards NIO.
+ */
+public enum Transport {
+    /**
+     * Epoll when available, NIO otherwise.
+     */
+    AUTO,
+    NIO,
+    EPOLL,
+    IO_URING,
+    /**
+     * In-VM channels addressed by port number, for tests and benchmarks.
+     */
+    LOCAL;
+
+    private static final Logger log = LoggerFactory.getLogger(Transport.class);
+
+    /**
+     * The concrete transport to use on this platform.
+     */
+    public Transport resolve() {
+        return switch (this) {
+            case AUTO -> Epoll.isAvailable() ? EPOLL : NIO;
+            case NIO -> NIO;
+            case LOCAL -> LOCAL;
+            case EPOLL -> {
+                if (Epoll.isAvailable()) yield EPOLL;
+                log.warn("Epoll unavailable, falling back to NIO", Epoll.unavailabilityCause());
+                yield NIO;
+            }
+            case IO_URING -> {
+                if (IoUring.isAvailable()) yield IO_URING;
+                log.warn("io_uring unavailable, falling back", IoUring.unavailabilityCause());
+                yield AUTO.resolve();
+            }
+        };
+    }
+
+    public IoHandlerFactory ioHandlerFactory() {
+        return switch (resolve()) {
+            case EPOLL -> EpollIoHandler.newFactory();
+            case IO_URING -> IoUringIoHandler.newFactory();
+            case LOCAL -> LocalIoHandler.newFactory();
+            default -> NioIoHandler.newFactory();
+        };
+    }
+
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return switch (resolve()) {
+            case EPOLL -> EpollServerSocketChannel.class;
+            case IO_URING -> IoUringServerSocketChannel.class;
+            case LOCAL -> LocalServerChannel.class;
+            default -> NioServerSocketChannel.class;
+        };
+    }
+
+    public Class<? extends Channel> channelClass() {
+        return switch (resolve()) {
+            case EPOLL -> EpollSocketChannel.class;
+            case IO_URING -> IoUringSocketChannel.class;
+            case LOCAL -> LocalChannel.class;
+            default -> NioSocketChannel.class;
+        };
+    }
+
+    /**
+     * @param host the host to connect to, or {@code null} for the wildcard address
+     */
+    public SocketAddress address(String host, int port) {
+        if (this == LOCAL) {
+            return new LocalAddress("jinvoke-rpc:" + port);
+        }
+        return host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Whether channels accept TCP socket options.
+     */
+    public boolean isSocket() {
+        return this != LOCAL;
+    }
+}
@@ -0,0 +1,325 @@
+package io.jinvoke.rpc.transport;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport tuning shared by {@code RpcServer} and {@code RpcClient}.
+ */
+public final class TransportOptions {
+    private Transport transport = Transport.AUTO;
+    private int bossThreads = 1;
+    private int workerThreads = 0;
+    private boolean tcpNoDelay = true;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private int backlog = 128;
+    private int flushMaxBatch = 64;
+    private long flushMaxDelayNanos = 0;
+    private long requestTimeoutNanos = TimeUnit.SECONDS.toNanos(60);
+    private int compressionThreshold = 16 * 1024;
+    private int chunkSize = 256 * 1024;
+    private int maxPayloadSize = 64 * 1024 * 1024;
+    private long reassemblyLimit = 256L * 1024 * 1024;
+    private int writeBufferLowWaterMark = 512 * 1024;
+    private int writeBufferHighWaterMark = 1024 * 1024;
+    private long maxQueuedBytes = 32L * 1024 * 1024;
+    private GroupBalancing groupBalancing = GroupBalancing.LEAST_OUTSTANDING;
+    private long livenessIdleNanos = TimeUnit.SECONDS.toNanos(15);
+    private int maxMissedPings = 3;
+
+    /**
+     * How the server picks the member of a service group that serves a call
+     * without a routing key. Calls with one always go by consistent hashing.
+     */
+    public enum GroupBalancing {
+        /** The member with the fewest requests awaiting a result. */
+        LEAST_OUTSTANDING,
+        /** The less loaded of two members picked at random. */
+        POWER_OF_TWO_CHOICES
+    }
+
+    public static TransportOptions defaults() {
+        return new TransportOptions();
+    }
+
+    public Transport transport() {
+        return transport;
+    }
+
+    public TransportOptions transport(Transport transport) {
+        this.transport = Objects.requireNonNull(transport, "transport required");
+        return this;
+    }
+
+    public int bossThreads() {
+        return bossThreads;
+    }
+
+    /**
+     * Threads accepting connections on the server.
+     */
+    public TransportOptions bossThreads(int bossThreads) {
+        this.bossThreads = requirePositive(bossThreads, "bossThreads");
+        return this;
+    }
+
+    public int workerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * I/O threads serving connections; {@code 0} uses Netty's default of twice the CPU count.
+     */
+    public TransportOptions workerThreads(int workerThreads) {
+        this.workerThreads = requireNonNegative(workerThreads, "workerThreads");
+        return this;
+    }
+
+    public boolean tcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public TransportOptions tcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    public int sendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * {@code SO_SNDBUF} in bytes; {@code 0} keeps the OS default.
+     */
+    public TransportOptions sendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = requireNonNegative(sendBufferSize, "sendBufferSize");
+        return this;
+    }
+
+    public int receiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * {@code SO_RCVBUF} in bytes; {@code 0} keeps the OS default.
+     */
+    public TransportOptions receiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = requireNonNegative(receiveBufferSize, "receiveBufferSize");
+        return this;
+    }
+
+    public int backlog() {
+        return backlog;
+    }
+
+    /**
+     * {@code SO_BACKLOG} of the server socket.
+     */
+    public TransportOptions backlog(int backlog) {
+        this.backlog = requirePositive(backlog, "backlog");
+        return this;
+    }
+
+    public int flushMaxBatch() {
+        return flushMaxBatch;
+    }
+
+    /**
+     * Maximum number of flushes coalesced into one; {@code 1} disables coalescing.
+     */
+    public TransportOptions flushMaxBatch(int flushMaxBatch) {
+        this.flushMaxBatch = requirePositive(flushMaxBatch, "flushMaxBatch");
+        return this;
+    }
+
+    public long flushMaxDelayNanos() {
+        return flushMaxDelayNanos;
+    }
+
+    /**
+     * Maximum latency a coalesced flush may add; {@code 0} flushes at the end of
+     * the current event-loop tick.
+     */
+    public TransportOptions flushMaxDelay(long delay, TimeUnit unit) {
+        this.flushMaxDelayNanos = unit.toNanos(requireNonNegative(delay, "flushMaxDelay"));
+        return this;
+    }
+
+    public long requestTimeoutNanos() {
+        return requestTimeoutNanos;
+    }
+
+    /**
+     * How long the server keeps a forwarded request before failing it back to the
+     * caller. Keep it above the callers' own timeouts; it only bounds what a
+     * target that never answers can leave behind.
+     */
+    public TransportOptions requestTimeout(long timeout, TimeUnit unit) {
+        this.requestTimeoutNanos = unit.toNanos(requirePositive(timeout, "requestTimeout"));
+        return this;
+    }
+
+    public int compressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Smallest payload, in bytes, deflated on connections whose peer accepted
+     * compression; {@code 0} turns compression off.
+     */
+    public TransportOptions compressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = requireNonNegative(compressionThreshold, "compressionThreshold");
+        return this;
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Largest request or result, in bytes, sent as one frame; larger ones follow
+     * in chunks of this size, which is also all the hub holds of them at a time.
+     */
+    public TransportOptions chunkSize(int chunkSize) {
+        if (chunkSize < 1024) {
+            throw new IllegalArgumentException("chunkSize must be at least 1024: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int maxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    /**
+     * Largest payload, in bytes, of a request or result sent or accepted.
+     */
+    public TransportOptions maxPayloadSize(int maxPayloadSize) {
+        this.maxPayloadSize = requirePositive(maxPayloadSize, "maxPayloadSize");
+        return this;
+    }
+
+    public long reassemblyLimit() {
+        return reassemblyLimit;
+    }
+
+    /**
+     * Bytes of chunked messages a connection may hold while they are still
+     * arriving; a message that would go beyond it is dropped and failed.
+     */
+    public TransportOptions reassemblyLimit(long reassemblyLimit) {
+        this.reassemblyLimit = requirePositive(reassemblyLimit, "reassemblyLimit");
+        return this;
+    }
+
+    public int writeBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public int writeBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    /**
+     * Bytes waiting to be written to a connection above which it turns
+     * unwritable, and below which it turns writable again. The server stops
+     * reading from the callers of a target while its connection is unwritable.
+     */
+    public TransportOptions writeBufferWaterMark(int low, int high) {
+        requirePositive(low, "writeBufferLowWaterMark");
+        if (high < low) {
+            throw new IllegalArgumentException("writeBufferHighWaterMark must not be below the low one: " + high);
+        }
+        this.writeBufferLowWaterMark = low;
+        this.writeBufferHighWaterMark = high;
+        return this;
+    }
+
+    public long maxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    /**
+     * Bytes of requests the server holds for one target connection before it
+     * refuses new ones with an {@code OverloadedException}.
+     */
+    public TransportOptions maxQueuedBytes(long maxQueuedBytes) {
+        this.maxQueuedBytes = requirePositive(maxQueuedBytes, "maxQueuedBytes");
+        return this;
+    }
+
+    public GroupBalancing groupBalancing() {
+        return groupBalancing;
+    }
+
+    public TransportOptions groupBalancing(GroupBalancing groupBalancing) {
+        this.groupBalancing = Objects.requireNonNull(groupBalancing, "groupBalancing required");
+        return this;
+    }
+
+    public long livenessIdleNanos() {
+        return livenessIdleNanos;
+    }
+
+    /**
+     * How long a connection may go without reading anything before it is pinged;
+     * {@code 0} sends no pings, though the peer's are still answered.
+     */
+    public TransportOptions livenessIdleTime(long idleTime, TimeUnit unit) {
+        this.livenessIdleNanos = unit.toNanos(requireNonNegative(idleTime, "livenessIdleTime"));
+        return this;
+    }
+
+    public int maxMissedPings() {
+        return maxMissedPings;
+    }
+
+    /**
+     * Pings in a row a connection may leave unanswered before it is closed as dead.
+     */
+    public TransportOptions maxMissedPings(int maxMissedPings) {
+        this.maxMissedPings = requirePositive(maxMissedPings, "maxMissedPings");
+        return this;
+    }
+
+    public LivenessHandler newLivenessHandler() {
+        return new LivenessHandler(livenessIdleNanos, maxMissedPings);
+    }
+
+    /**
+     * @return the flush handler for a new channel, or {@code null} when coalescing is off
+     */
+    public FlushCoalescingHandler newFlushHandler() {
+        return flushMaxBatch > 1 ? new FlushCoalescingHandler(flushMaxBatch, flushMaxDelayNanos) : null;
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    private static long requirePositive(long value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    private static int requireNonNegative(int value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + value);
+        }
+        return value;
+    }
+
+    private static long requireNonNegative(long value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + value);
+        }
+        return value;
+    }
+}
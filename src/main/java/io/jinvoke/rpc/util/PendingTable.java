@@ -0,0 +1,98 @@
+package io.jinvoke.rpc.util;
+
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe map from {@code long} request ids to in-flight state, without
+ * boxing keys. Entries are spread over lock stripes by the low bits of the id,
+ * which suits the monotonically increasing ids handed out per connection.
+ */
+public final class PendingTable<V> {
+    private static final int STRIPES = 16;
+    private static final int MASK = STRIPES - 1;
+
+    private final LongObjectHashMap<V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public PendingTable() {
+        stripes = (LongObjectHashMap<V>[]) new LongObjectHashMap<?>[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongObjectHashMap<>();
+        }
+    }
+
+    public V put(long id, V value) {
+        LongObjectHashMap<V> stripe = stripe(id);
+        synchronized (stripe) {
+            return stripe.put(id, value);
+        }
+    }
+
+    public V get(long id) {
+        LongObjectHashMap<V> stripe = stripe(id);
+        synchronized (stripe) {
+            return stripe.get(id);
+        }
+    }
+
+    public V remove(long id) {
+        LongObjectHashMap<V> stripe = stripe(id);
+        synchronized (stripe) {
+            return stripe.remove(id);
+        }
+    }
+
+    /**
+     * Removes every entry, e.g. to fail everything in flight on a closed connection.
+     */
+    public List<V> removeAll() {
+        List<V> removed = new ArrayList<>();
+        for (LongObjectHashMap<V> stripe : stripes) {
+            synchronized (stripe) {
+                removed.addAll(stripe.values());
+                stripe.clear();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the entries matching {@code filter}, e.g. those sent on one of several connections.
+     */
+    public List<V> removeIf(Predicate<? super V> filter) {
+        List<V> removed = new ArrayList<>();
+        for (LongObjectHashMap<V> stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<LongObjectMap.PrimitiveEntry<V>> entries = stripe.entries().iterator();
+                while (entries.hasNext()) {
+                    V value = entries.next().value();
+                    if (filter.test(value)) {
+                        removed.add(value);
+                        entries.remove();
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (LongObjectHashMap<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private LongObjectHashMap<V> stripe(long id) {
+        return stripes[(int) id & MASK];
+    }
+}
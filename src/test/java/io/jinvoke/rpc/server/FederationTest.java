@@ -0,0 +1,150 @@
+package io.jinvoke.rpc.server;
+
+import io.jinvoke.rpc.client.RpcClient;
+import io.jinvoke.rpc.client.RpcProxyFactory;
+import io.jinvoke.rpc.config.Rpc;
+import io.jinvoke.rpc.transport.TransportOptions;
+import io.netty.channel.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Two hubs on loopback, each given the other as a peer, with one client on each.
+ */
+class FederationTest {
+    private static final long AWAIT_MILLIS = 10_000;
+
+    private RpcServer h1;
+    private RpcServer h2;
+    private final List<RpcClient> clients = new ArrayList<>();
+
+    public interface Greeter {
+        String greet(String name);
+
+        String slow(int millis);
+    }
+
+    public static class GreeterService implements Greeter {
+        @Rpc
+        @Override
+        public String greet(String name) {
+            return "hello " + name;
+        }
+
+        @Rpc
+        @Override
+        public String slow(int millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slept " + millis;
+        }
+    }
+
+    @BeforeEach
+    void startHubs() throws Exception {
+        int p1 = freePort();
+        int p2 = freePort();
+        h1 = new RpcServer(p1, TransportOptions.defaults(), List.of(new InetSocketAddress("localhost", p2)));
+        h2 = new RpcServer(p2, TransportOptions.defaults(), List.of(new InetSocketAddress("localhost", p1)));
+        h1.bind();
+        h2.bind();
+        client("a", p1);
+        client("b", p2);
+        await(() -> h1.registry().getRemoteClient("b") != null && h2.registry().getRemoteClient("a") != null);
+    }
+
+    @AfterEach
+    void stopHubs() {
+        clients.forEach(RpcClient::shutdown);
+        if (h1 != null) {
+            h1.shutdown();
+        }
+        if (h2 != null) {
+            h2.shutdown();
+        }
+    }
+
+    @Test
+    void callsCrossTheLinkBothWays() {
+        assertEquals("hello a", greeter(clients.get(0), "b").greet("a"));
+        assertEquals("hello b", greeter(clients.get(1), "a").greet("b"));
+    }
+
+    @Test
+    void callFailsWhenItsTargetDrops() throws Exception {
+        Greeter toB = greeter(clients.get(0), "b");
+        CompletableFuture<String> call = CompletableFuture.supplyAsync(() -> toB.slow(2_000));
+        await(() -> h2.registry().pendingRequestCount() == 1);
+
+        clients.get(1).channel().close();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("Client disconnected: b"), e.getCause().getMessage());
+        await(() -> h1.registry().pendingRequestCount() == 0 && h2.registry().pendingRequestCount() == 0);
+    }
+
+    @Test
+    void clientStaysReachableWhileAnotherLinkToItsHubIsUp() throws Exception {
+        // Both hubs dial each other, so they end up with two links
+        await(() -> h1.registry().peerLinkCount() == 2 && h2.registry().peerLinkCount() == 2);
+        Thread.sleep(200); // the presence snapshot of the second link
+
+        Channel link = h1.registry().getRemoteClient("b");
+        link.close().sync();
+
+        Channel other = h1.registry().getRemoteClient("b");
+        assertNotNull(other);
+        assertNotSame(link, other);
+        assertEquals("hello a", greeter(clients.get(0), "b").greet("a"));
+    }
+
+    private void client(String clientId, int port) {
+        RpcClient client = new RpcClient();
+        client.setPort(port);
+        client.setClientId(clientId);
+        client.setScanPackages(new String[]{FederationTest.class.getPackageName()});
+        client.afterSingletonsInstantiated();
+        clients.add(client);
+    }
+
+    private static Greeter greeter(RpcClient client, String target) {
+        return new RpcProxyFactory(client).generate(Greeter.class, target, 5, TimeUnit.SECONDS);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(AWAIT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within " + AWAIT_MILLIS + " ms");
+            }
+            Thread.sleep(20);
+        }
+    }
+}